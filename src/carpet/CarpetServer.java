@@ -129,6 +129,7 @@ public class CarpetServer // static for now - easier to handle all around the co
         HUDController.update_hud(server);
         WorldEditBridge.onStartTick();
         PUBSUB.update(server.getTickCounter());
+        PUBSUB_MESSENGER.flush();
     }
     public static void playerConnected(EntityPlayerMP player)
     {
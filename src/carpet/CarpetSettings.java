@@ -19,6 +19,7 @@ import java.util.stream.Collectors;
 
 import carpet.carpetclient.CarpetClientChunkLogger;
 import carpet.carpetclient.CarpetClientRuleChanger;
+import carpet.helpers.PacketCompression;
 import carpet.helpers.RandomTickOptimization;
 import carpet.helpers.ScoreboardDelta;
 import carpet.patches.BlockWool;
@@ -999,6 +1000,120 @@ public class CarpetSettings
     @Rule(desc = "Removes tnt applying velocity to other entities.", category = CREATIVE)
     public static boolean removeTNTVelocity = false;
 
+    @Rule(desc = "Keeps rolling tick time histograms for the profiled sections", category = {COMMANDS, OPTIMIZATIONS}, extra = {
+            "Query with /profile histogram, published on minecraft.performance.histogram pubsub nodes",
+            "Covers the last 5 minutes of ticks"
+    })
+    public static boolean rollingProfiler = false;
+
+    @Rule(desc = "Keeps scheduled tile ticks in buckets per game tick instead of a TreeSet", category = {EXPERIMENTAL, OPTIMIZATIONS}, extra = {
+            "Tile ticks still run in the exact vanilla order",
+            "Pending ticks are also indexed by chunk for faster chunk saving and unloading"
+    })
+    public static boolean bucketedTileTicks = false;
+
+    @Rule(desc = "Uses memory mapped NIO region files with per-file read/write locks", category = {EXPERIMENTAL, OPTIMIZATIONS}, extra = {
+            "Chunks in the same region file can be read in parallel and saving doesn't block the region cache",
+            "Applies to region files opened after the change, the file format is unchanged"
+    })
+    public static boolean nioRegionFiles = false;
+
+    @Rule(desc = "Maximum number of region files kept open", category = OPTIMIZATIONS, options = {"64", "256", "1024"}, validator = "validatePositive", extra = {
+            "When full the least recently used file is closed, instead of closing all of them like vanilla",
+            "Counters are shown with /profile regions"
+    })
+    public static int regionFileCacheSize = 256;
+
+    @Rule(desc = "Number of worker threads encoding and compressing chunks when saving, 0 for vanilla", category = {EXPERIMENTAL, OPTIMIZATIONS}, options = {"0", "2", "4"}, validator = "validateNonNegative", extra = {
+            "Chunks are still converted to NBT on the main thread and written to region files one at a time",
+            "Queue depth and write speed are shown in the autosave logger"
+    })
+    public static int chunkSaveThreads = 0;
+
+    @Rule(desc = "Compression used for chunks written to region files", category = {EXPERIMENTAL, OPTIMIZATIONS}, extra = {
+            "Chunks written with any of them can always be read back, so a world can mix them",
+            "'none' is the fastest but worlds using it can't be opened by vanilla 1.12",
+            "Compare them on the loaded chunks with /profile codecs"
+    })
+    public static RegionCompression regionCompression = RegionCompression.deflate;
+    public static enum RegionCompression {
+        deflate, gzip, none
+    }
+
+    @Rule(desc = "Deflate level for region file compression, -1 for the default", category = {EXPERIMENTAL, OPTIMIZATIONS}, options = {"-1", "1", "6", "9"}, validator = "validateDeflateLevel", extra = {
+            "1 is the fastest and still readable by vanilla"
+    })
+    public static int regionDeflateLevel = -1;
+    private static boolean validateDeflateLevel(int value) {
+        return value >= -1 && value <= 9;
+    }
+
+    @Rule(desc = "Defers and deduplicates newLight updates until the end of the tick", category = {EXPERIMENTAL, OPTIMIZATIONS}, extra = {
+            "Requires newLight. Reading light only processes the queue early if a queued update is close enough to change it",
+            "Counters are shown with /profile lighting"
+    })
+    public static boolean batchedLightUpdates = false;
+
+    @Rule(desc = "Entity tracker only checks players and entities close enough to see each other", category = OPTIMIZATIONS, extra = {
+            "Players and tracked entities are bucketed in 64x64 columns instead of checking every entity against every player",
+            "Entities and players see each other exactly like in vanilla"
+    })
+    public static boolean spatialEntityTracker = false;
+
+    @Rule(desc = "Sends the packets of a tick in one flush per player instead of one flush per packet", category = {EXPERIMENTAL, OPTIMIZATIONS}, extra = {
+            "Packets are also flushed once 32KB are waiting. Keep alive, chat and disconnect packets are sent right away",
+            "Flushes per tick and bytes per flush are shown in the packets logger"
+    })
+    public static boolean packetBatching = false;
+
+    @Rule(desc = "Compresses large packets on a pool of this many threads instead of the network thread of the connection", category = {EXPERIMENTAL, OPTIMIZATIONS}, options = {"0", "1", "2", "4"}, validator = "validatePacketCompressionThreads", extra = {
+            "0 compresses them on the network thread like vanilla. Packets still arrive in order"
+    })
+    public static int packetCompressionThreads = 0;
+    private static boolean validatePacketCompressionThreads(int value) {
+        if (value < 0) return false;
+        PacketCompression.setThreads(value);
+        return true;
+    }
+
+    @Rule(desc = "Caches compressed chunk data and reuses it for the other players the same chunk is sent to", category = OPTIMIZATIONS, extra = {
+            "Works with and without packetCompressionThreads",
+            "Hits and misses are shown in the packets logger"
+    })
+    public static boolean compressedChunkCache = false;
+
+    @Rule(desc = "Reuses the encoded blocks and light of a chunk for every player it is sent to until it changes", category = OPTIMIZATIONS, extra = {
+            "Tile entities are still read from the chunk for each packet",
+            "Hits and misses are shown in the packets logger"
+    })
+    public static boolean chunkPacketCache = false;
+
+    @Rule(desc = "Players take turns loading and sending chunks, nearest and in front of them first", category = {EXPERIMENTAL, OPTIMIZATIONS}, extra = {
+            "Loading is limited by chunkLoadsPerTick for all players together, sending by chunkSendBudget per player",
+            "Queue depths and send latencies are shown with /profile chunksending"
+    })
+    public static boolean prioritizedChunkSending = false;
+
+    @Rule(desc = "Chunks loaded or generated per tick and dimension for players with prioritizedChunkSending", category = OPTIMIZATIONS, options = {"10", "25", "50", "100"}, validator = "validatePositive", extra = {
+            "Loading also stops after 50ms like vanilla"
+    })
+    public static int chunkLoadsPerTick = 50;
+
+    @Rule(desc = "Kilobytes of chunk data sent to each player per tick with prioritizedChunkSending", category = OPTIMIZATIONS, options = {"128", "512", "2048"}, validator = "validatePositive", extra = {
+            "Chunks watched by other players are sent to them as well, without using their budget"
+    })
+    public static int chunkSendBudget = 512;
+
+    @Rule(desc = "Mob caps are counted as entities are added and removed, and the spawnable chunks only recomputed when players change chunks", category = {EXPERIMENTAL, OPTIMIZATIONS}, extra = {
+            "Mob caps, spawning chunks and the order they are tried in are the same as in vanilla"
+    })
+    public static boolean optimizedMobSpawning = false;
+
+    @Rule(desc = "Hoppers and hopper minecarts capture items from per chunk section item lists without allocating", category = OPTIMIZATIONS, extra = {
+            "Items are picked up in the same order as in vanilla"
+    })
+    public static boolean optimizedItemCapture = false;
+
     // ===== API ===== //
 
     /**
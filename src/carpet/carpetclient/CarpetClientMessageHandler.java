@@ -26,6 +26,7 @@ public class CarpetClientMessageHandler {
     public static final int PISTON_UPDATES = 6;
     public static final int RANDOMTICK_DISPLAY = 7;
     public static final int CUSTOM_RECIPES = 8;
+    public static final int CHUNK_PROFILE = 9;
 
     private static final int NET_VERSION = 1;
 
@@ -150,6 +151,16 @@ public class CarpetClientMessageHandler {
         CarpetClientServer.sender(data, sender);
     }
 
+    public static void sendNBTChunkProfileData(NBTTagCompound compound) {
+        PacketBuffer data = new PacketBuffer(Unpooled.buffer());
+        data.writeInt(CarpetClientMessageHandler.CHUNK_PROFILE);
+        try {
+            data.writeCompoundTag(compound);
+        } catch (Exception e) {
+        }
+        CarpetClientServer.sender(data);
+    }
+
     public static void sendCustomRecipes(EntityPlayerMP sender) {
         if (CustomCrafting.getRecipeList().size() == 0) return;
         PacketBuffer data = new PacketBuffer(Unpooled.buffer());
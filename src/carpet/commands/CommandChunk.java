@@ -11,6 +11,7 @@ import net.minecraft.util.HttpUtil;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.text.TextComponentString;
+import net.minecraft.world.NextTickListEntry;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.chunk.Chunk;
@@ -18,6 +19,7 @@ import net.minecraft.world.gen.ChunkProviderServer;
 import net.minecraft.world.gen.IChunkGenerator;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -29,7 +31,7 @@ public class CommandChunk extends CommandCarpetBase
 
     public String getUsage(ICommandSender sender)
     {
-        return "Usage: chunk <load | info | unload | regen | repop | asyncrepop> <X> <Z>";
+        return "Usage: chunk <load | info | ticks | unload | regen | repop | asyncrepop> <X> <Z>";
     }
 
     public String getName()
@@ -71,6 +73,9 @@ public class CommandChunk extends CommandCarpetBase
                 case "asyncrepop":
                     asyncrepop(sender, chunkX, chunkZ);
                     return;
+                case "ticks":
+                    ticks(sender, chunkX, chunkZ);
+                    return;
                 case "info":
                 default:
                     info(sender, chunkX, chunkZ);
@@ -154,6 +159,20 @@ public class CommandChunk extends CommandCarpetBase
             sender.sendMessage(new TextComponentString(("Spawn Chunk")));
     }
 
+    protected void ticks(ICommandSender sender, int x, int z) {
+        List<NextTickListEntry> ticks = new ArrayList<>(((WorldServer) world).getPendingTickEntries(x, z));
+        Collections.sort(ticks);
+        long time = world.getTotalWorldTime();
+        sender.sendMessage(new TextComponentString(("Chunk " + x + ", " + z + " has " + ticks.size() + " scheduled tile ticks")));
+        for (NextTickListEntry entry : ticks.subList(0, Math.min(ticks.size(), 20))) {
+            BlockPos pos = entry.position;
+            sender.sendMessage(new TextComponentString(String.format(" - %s at [%d, %d, %d] in %d gt, priority %d",
+                    entry.getBlock().getLocalizedName(), pos.getX(), pos.getY(), pos.getZ(), entry.scheduledTime - time, entry.priority)));
+        }
+        if (ticks.size() > 20)
+            sender.sendMessage(new TextComponentString((" - and " + (ticks.size() - 20) + " more")));
+    }
+
     protected void unload(ICommandSender sender, int x, int z){
         if(!world.isChunkLoaded(x, z, false)) {
             sender.sendMessage(new TextComponentString(("Chunk is not loaded")));
@@ -170,7 +189,7 @@ public class CommandChunk extends CommandCarpetBase
         int chunkZ = sender.getPosition().getZ() >> 4;
 
         if (args.length == 1) {
-            return getListOfStringsMatchingLastWord(args, "info", "load", "unload", "regen", "repop", "asyncrepop");
+            return getListOfStringsMatchingLastWord(args, "info", "ticks", "load", "unload", "regen", "repop", "asyncrepop");
         } else if (args.length == 2) {
             return getListOfStringsMatchingLastWord(args, Integer.toString(chunkX), "~");
         } else if (args.length == 3) {
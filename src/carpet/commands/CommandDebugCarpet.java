@@ -65,7 +65,7 @@ public class CommandDebugCarpet extends CommandCarpetBase {
             }
         }
         if("pendingTickListEntriesTreeSet".equalsIgnoreCase(args[0])) {
-            for(NextTickListEntry e : ((WorldServer)sender.getEntityWorld()).pendingTickListEntriesTreeSet){
+            for(NextTickListEntry e : ((WorldServer)sender.getEntityWorld()).getPendingTickEntries()){
                 sender.sendMessage(Messenger.s(sender, e.toString()));
             }
         }
@@ -3,11 +3,14 @@ package carpet.commands;
 import javax.annotation.Nullable;
 
 import carpet.CarpetSettings;
+import carpet.helpers.RegionCodecBenchmark;
 import carpet.utils.CarpetProfiler;
 import net.minecraft.command.CommandException;
 import net.minecraft.command.ICommandSender;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.storage.RegionFileCache;
 
 import java.util.Collections;
 import java.util.List;
@@ -23,7 +26,7 @@ public class CommandProfile extends CommandCarpetBase
     @Override
     public String getUsage(ICommandSender sender)
     {
-        return "Usage: /profile <entities>";
+        return "Usage: /profile <entities|chunks|histogram|regions [reset]|codecs|lighting|chunksending>";
     }
 
     @Override
@@ -34,6 +37,38 @@ public class CommandProfile extends CommandCarpetBase
         {
             CarpetProfiler.prepare_entity_report(100);
         }
+        else if (args.length > 0 && "chunks".equalsIgnoreCase(args[0]))
+        {
+            CarpetProfiler.prepare_chunk_report(100);
+        }
+        else if (args.length > 0 && "histogram".equalsIgnoreCase(args[0]))
+        {
+            CarpetProfiler.print_rolling_report(sender);
+        }
+        else if (args.length > 0 && "regions".equalsIgnoreCase(args[0]))
+        {
+            if (args.length > 1 && "reset".equalsIgnoreCase(args[1]))
+            {
+                RegionFileCache.resetStats();
+                notifyCommandListener(sender, this, "Region file counters reset");
+            }
+            else
+            {
+                CarpetProfiler.print_region_cache_report(sender);
+            }
+        }
+        else if (args.length > 0 && "lighting".equalsIgnoreCase(args[0]))
+        {
+            CarpetProfiler.print_lighting_report(server, sender);
+        }
+        else if (args.length > 0 && "chunksending".equalsIgnoreCase(args[0]))
+        {
+            CarpetProfiler.print_chunk_send_report(server, sender);
+        }
+        else if (args.length > 0 && "codecs".equalsIgnoreCase(args[0]))
+        {
+            RegionCodecBenchmark.run(sender, (WorldServer) sender.getEntityWorld(), 256);
+        }
         else
         {
             CarpetProfiler.prepare_tick_report(100);
@@ -48,7 +83,11 @@ public class CommandProfile extends CommandCarpetBase
         }
         if (args.length == 1)
         {
-            return getListOfStringsMatchingLastWord(args, "entities");
+            return getListOfStringsMatchingLastWord(args, "entities", "chunks", "histogram", "regions", "codecs", "lighting", "chunksending");
+        }
+        if (args.length == 2 && "regions".equalsIgnoreCase(args[0]))
+        {
+            return getListOfStringsMatchingLastWord(args, "reset");
         }
         return Collections.<String>emptyList();
     }
@@ -1,5 +1,6 @@
 package carpet.commands;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import javax.annotation.Nullable;
@@ -174,17 +175,17 @@ public class CommandSpawn extends CommandCarpetBase
         {
             if (args.length >= 2 && "reset".equalsIgnoreCase(args[1]))
             {
-                for (String s: SpawnReporter.spawn_tries.keySet())
-                {
-                    SpawnReporter.spawn_tries.put(s,1);
-                }
+                Arrays.fill(SpawnReporter.spawn_tries, 1);
             }
             else if (args.length >= 3)
             {
                 String str = args[1];
-                String code = SpawnReporter.get_creature_code_from_string(str);
+                EnumCreatureType type = SpawnReporter.get_creature_type_from_code(str);
                 int num = parseInt(args[2], 0, 1000);
-                SpawnReporter.spawn_tries.put(code, num);
+                if (type != null)
+                {
+                    SpawnReporter.spawn_tries[type.ordinal()] = num;
+                }
             }
             if (sender instanceof EntityPlayerMP)
             {
@@ -0,0 +1,70 @@
+package carpet.helpers;
+
+import carpet.CarpetSettings;
+import net.minecraft.network.play.server.SPacketChunkData;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import java.util.Arrays;
+
+/**
+ * Encoded sections of the last full chunk packet of a PlayerChunkMapEntry, reused for the next players
+ * the chunk is sent to as long as no section was replaced or modified and the biomes are the same.
+ * Tile entities are not cached, they can change without the chunk noticing.
+ */
+public class ChunkPacketCache {
+    public static long hits = 0;
+    public static long misses = 0;
+
+    private Chunk chunk;
+    private final ExtendedBlockStorage[] sections = new ExtendedBlockStorage[16];
+    private final int[] modificationCounts = new int[16];
+    private byte[] biomes;
+    private byte[] buffer;
+    private int availableSections;
+
+    public SPacketChunkData getFullChunkPacket(Chunk chunk) {
+        if (!CarpetSettings.chunkPacketCache) {
+            this.buffer = null;
+            return new SPacketChunkData(chunk, 65535);
+        }
+        // pending light changes first, they may invalidate the cached data
+        if (CarpetSettings.newLight) chunk.getWorld().lightingEngine.procLightUpdates();
+        if (isValid(chunk)) {
+            hits++;
+            return new SPacketChunkData(chunk, buffer, availableSections);
+        }
+        misses++;
+        SPacketChunkData packet = new SPacketChunkData(chunk, 65535);
+        this.chunk = chunk;
+        ExtendedBlockStorage[] storages = chunk.getBlockStorageArray();
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = storages[i];
+            modificationCounts[i] = storages[i] == Chunk.NULL_BLOCK_STORAGE ? 0 : storages[i].getModificationCount();
+        }
+        biomes = chunk.getBiomeArray().clone();
+        buffer = packet.getSectionBuffer();
+        availableSections = packet.getAvailableSections();
+        return packet;
+    }
+
+    public void invalidate() {
+        chunk = null;
+        buffer = null;
+    }
+
+    private boolean isValid(Chunk chunk) {
+        if (buffer == null || this.chunk != chunk) return false;
+        ExtendedBlockStorage[] storages = chunk.getBlockStorageArray();
+        for (int i = 0; i < sections.length; i++) {
+            if (storages[i] != sections[i]) return false;
+            if (storages[i] != Chunk.NULL_BLOCK_STORAGE && storages[i].getModificationCount() != modificationCounts[i]) return false;
+        }
+        return Arrays.equals(biomes, chunk.getBiomeArray());
+    }
+
+    public static void resetStats() {
+        hits = 0;
+        misses = 0;
+    }
+}
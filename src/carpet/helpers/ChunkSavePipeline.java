@@ -0,0 +1,95 @@
+package carpet.helpers;
+
+import carpet.CarpetSettings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Worker pool and counters for the chunk save pipeline used when chunkSaveThreads is above 0.
+ * Chunks are turned into NBT on the main thread as in vanilla, the workers encode and deflate them
+ * and the File IO thread writes the results to the region files in order.
+ */
+public class ChunkSavePipeline {
+    /** Max number of chunks handed to the workers per IO step */
+    public static final int BATCH_SIZE = 64;
+
+    private static ExecutorService workers;
+    private static int workerCount;
+
+    // chunks waiting for a save, across all dimensions
+    private static final AtomicInteger queued = new AtomicInteger();
+    private static final AtomicLong coalesced = new AtomicLong();
+    private static final AtomicLong chunksWritten = new AtomicLong();
+    private static final AtomicLong bytesWritten = new AtomicLong();
+
+    private static long rateBytes;
+    private static long rateTime;
+    private static double bytesPerSecond;
+
+    public static boolean isEnabled() {
+        return CarpetSettings.chunkSaveThreads > 0;
+    }
+
+    /**
+     * @return The pool for encoding chunks, resized if the rule changed since the last call
+     */
+    public static synchronized ExecutorService getWorkers() {
+        int threads = Math.max(CarpetSettings.chunkSaveThreads, 1);
+        if (workers == null || workerCount != threads) {
+            if (workers != null) {
+                // already submitted encodes still finish
+                workers.shutdown();
+            }
+            workers = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("Chunk Save Worker #%d").setDaemon(true).setPriority(Thread.MIN_PRIORITY).build());
+            workerCount = threads;
+        }
+        return workers;
+    }
+
+    public static void onQueued(boolean replaced) {
+        if (replaced) {
+            coalesced.incrementAndGet();
+        } else {
+            queued.incrementAndGet();
+        }
+    }
+
+    public static void onFetched() {
+        queued.decrementAndGet();
+    }
+
+    public static void onWritten(int bytes) {
+        chunksWritten.incrementAndGet();
+        bytesWritten.addAndGet(bytes);
+    }
+
+    public static int getQueueDepth() {
+        return queued.get();
+    }
+
+    public static long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public static long getChunksWritten() {
+        return chunksWritten.get();
+    }
+
+    /**
+     * Compressed bytes written per second since the previous call, meant to be polled at a fixed interval
+     */
+    public static double updateBytesPerSecond() {
+        long now = System.nanoTime();
+        long bytes = bytesWritten.get();
+        if (rateTime != 0L && now > rateTime) {
+            bytesPerSecond = (bytes - rateBytes) * 1.0E9D / (now - rateTime);
+        }
+        rateBytes = bytes;
+        rateTime = now;
+        return bytesPerSecond;
+    }
+}
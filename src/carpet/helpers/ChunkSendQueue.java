@@ -0,0 +1,186 @@
+package carpet.helpers;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.management.PlayerChunkMapEntry;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per player queues of the chunks waiting to be loaded or sent, used by PlayerChunkMap with prioritizedChunkSending.
+ * Each player gets the chunks it watches ordered by distance, with the ones in front of it first,
+ * and players take turns so one player flying into new terrain doesn't hold up everyone else.
+ * Also keeps the counters shown by /profile chunksending.
+ */
+public class ChunkSendQueue {
+    private final Map<EntityPlayerMP, PlayerQueue> queues = new IdentityHashMap<>();
+    private final List<PlayerQueue> order = new ArrayList<>();
+    /** Entries no player is watching, handled last like vanilla does by sorting them last */
+    private final PlayerQueue unwatched = new PlayerQueue(null);
+    private int nextQueue;
+    private PlayerQueue lastQueue;
+
+    private static long chunksLoaded;
+    private static long chunksSent;
+    private static long bytesSent;
+    private static long latencyNanos;
+    private static long maxLatencyNanos;
+
+    public ChunkSendQueue(Collection<PlayerChunkMapEntry> entries, boolean onlyWithoutChunk) {
+        for (PlayerChunkMapEntry entry : entries) {
+            if (onlyWithoutChunk && entry.getChunk() != null) continue;
+            if (entry.players.isEmpty()) {
+                unwatched.add(entry, 0.0D);
+                continue;
+            }
+            for (EntityPlayerMP player : entry.players) {
+                PlayerQueue queue = queues.get(player);
+                if (queue == null) {
+                    queue = new PlayerQueue(player);
+                    queues.put(player, queue);
+                    order.add(queue);
+                }
+                queue.add(entry, getPriority(entry.getPos(), player));
+            }
+        }
+        for (PlayerQueue queue : order) queue.sort();
+        order.add(unwatched);
+    }
+
+    /**
+     * Lower is sooner: squared distance, halved straight ahead of the player and up to half again behind it
+     */
+    public static double getPriority(ChunkPos pos, EntityPlayerMP player) {
+        double dx = (pos.x << 4) + 8 - player.posX;
+        double dz = (pos.z << 4) + 8 - player.posZ;
+        double distSq = dx * dx + dz * dz;
+        if (distSq < 1.0D) return 0.0D;
+        double lookX = -MathHelper.sin(player.rotationYaw * 0.017453292F);
+        double lookZ = MathHelper.cos(player.rotationYaw * 0.017453292F);
+        double facing = (dx * lookX + dz * lookZ) / Math.sqrt(distSq);
+        return distSq * (1.0D - 0.5D * facing);
+    }
+
+    /**
+     * @return The next entry of the next player in turn, or null once all queues are empty
+     */
+    public PlayerChunkMapEntry next() {
+        for (int tries = 0; tries < order.size(); tries++) {
+            PlayerQueue queue = order.get(nextQueue);
+            nextQueue = (nextQueue + 1) % order.size();
+            if (queue.hasNext()) {
+                lastQueue = queue;
+                return queue.next();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes bytes off the send budget of the player whose turn produced the last entry
+     */
+    public void charge(int bytes) {
+        if (lastQueue != null) lastQueue.budget -= bytes;
+    }
+
+    /**
+     * Players without budget left are skipped for the rest of the tick
+     */
+    public void setBudget(int bytes) {
+        for (PlayerQueue queue : order) {
+            queue.budget = queue.player == null ? Integer.MAX_VALUE : bytes;
+        }
+    }
+
+    /**
+     * @return Number of queued chunks per player, the same chunk counts for every player watching it
+     */
+    public Map<EntityPlayerMP, Integer> getDepths() {
+        Map<EntityPlayerMP, Integer> depths = new IdentityHashMap<>();
+        for (PlayerQueue queue : queues.values()) depths.put(queue.player, queue.entries.size());
+        return depths;
+    }
+
+    public static void onLoaded() {
+        chunksLoaded++;
+    }
+
+    public static void onSent(long queuedNanos, int bytes) {
+        long latency = System.nanoTime() - queuedNanos;
+        chunksSent++;
+        bytesSent += bytes;
+        latencyNanos += latency;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+    }
+
+    public static long getChunksLoaded() {
+        return chunksLoaded;
+    }
+
+    public static long getChunksSent() {
+        return chunksSent;
+    }
+
+    public static long getBytesSent() {
+        return bytesSent;
+    }
+
+    public static double getAverageLatencyMillis() {
+        return chunksSent == 0 ? 0.0D : latencyNanos / 1000000.0D / chunksSent;
+    }
+
+    public static double getMaxLatencyMillis() {
+        return maxLatencyNanos / 1000000.0D;
+    }
+
+    public static void resetStats() {
+        chunksLoaded = 0;
+        chunksSent = 0;
+        bytesSent = 0;
+        latencyNanos = 0;
+        maxLatencyNanos = 0;
+    }
+
+    private static class PlayerQueue {
+        private final EntityPlayerMP player;
+        private final List<Queued> entries = new ArrayList<>();
+        private int index;
+        private int budget = Integer.MAX_VALUE;
+
+        private PlayerQueue(EntityPlayerMP player) {
+            this.player = player;
+        }
+
+        private void add(PlayerChunkMapEntry entry, double priority) {
+            entries.add(new Queued(entry, priority));
+        }
+
+        private void sort() {
+            entries.sort(Comparator.comparingDouble(queued -> queued.priority));
+        }
+
+        private boolean hasNext() {
+            return budget > 0 && index < entries.size();
+        }
+
+        private PlayerChunkMapEntry next() {
+            return entries.get(index++).entry;
+        }
+    }
+
+    private static class Queued {
+        private final PlayerChunkMapEntry entry;
+        private final double priority;
+
+        private Queued(PlayerChunkMapEntry entry, double priority) {
+            this.entry = entry;
+            this.priority = priority;
+        }
+    }
+}
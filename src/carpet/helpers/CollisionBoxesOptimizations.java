@@ -5,6 +5,7 @@ import java.util.List;
 
 import javax.annotation.Nullable;
 
+import net.minecraft.block.Block;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.Entity;
 import net.minecraft.init.Blocks;
@@ -14,9 +15,17 @@ import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.World;
 import net.minecraft.world.border.WorldBorder;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 
 public class CollisionBoxesOptimizations
 {
+    // Collision shapes cached per block in ExtendedBlockStorage
+    private static final int SHAPE_EMPTY = 0;
+    private static final int SHAPE_FULL = 1;
+    private static final int SHAPE_COMPLEX = 2;
+    private static final int SHAPE_UNKNOWN = 3;
+    private static final int SHAPES_EMPTY = 0;
+
     public static boolean optimizedGetCollisionBoxes(World world, @Nullable Entity entityIn, AxisAlignedBB aabb, boolean p_191504_3_, @Nullable List<AxisAlignedBB> outList)
     {
         final int startX = MathHelper.floor(aabb.minX) - 1;
@@ -28,7 +37,6 @@ public class CollisionBoxesOptimizations
         WorldBorder worldborder = world.getWorldBorder();
         boolean flag = entityIn != null && entityIn.isOutsideBorder();
         boolean flag1 = entityIn != null && world.isInsideWorldBorder(entityIn);
-        IBlockState stateStone = Blocks.STONE.getDefaultState();
         BlockPos.PooledMutableBlockPos posMutable = BlockPos.PooledMutableBlockPos.retain();
 
         try
@@ -52,6 +60,8 @@ public class CollisionBoxesOptimizations
                         final int zMax = Math.min((cz << 4) + 15, endZ - 1);
                         final int yMax = Math.min(chunk.getTopFilledSegment() + 15, endY - 1);
 
+                        ExtendedBlockStorage[] storages = chunk.getBlockStorageArray();
+
                         for (int x = xMin; x <= xMax; ++x)
                         {
                             for (int z = zMin; z <= zMax; ++z)
@@ -61,35 +71,89 @@ public class CollisionBoxesOptimizations
 
                                 if (! xIsEdge || ! zIsEdge)
                                 {
-                                    for (int y = yMin; y <= yMax; ++y)
+                                    final int yEnd = xIsEdge || zIsEdge ? Math.min(yMax, endY - 2) : yMax;
+
+                                    if (yMin > yEnd)
+                                    {
+                                        continue;
+                                    }
+
+                                    if (p_191504_3_)
                                     {
-                                        if (! xIsEdge && ! zIsEdge || y != endY - 1)
+                                        if (x < -30000000 || x >= 30000000 || z < -30000000 || z >= 30000000)
                                         {
-                                            if (p_191504_3_)
+                                            return true;
+                                        }
+                                    }
+                                    else if (entityIn != null && flag == flag1)
+                                    {
+                                        entityIn.setOutsideBorder(! flag1);
+                                    }
+
+                                    // The border only depends on x and z, outside of it the whole column is stone
+                                    boolean isStone = ! p_191504_3_ && flag1 && ! worldborder.contains(posMutable.setPos(x, 0, z));
+
+                                    for (int sy = yMin >> 4; sy <= yEnd >> 4; ++sy)
+                                    {
+                                        final int y0 = Math.max(yMin, sy << 4);
+                                        final int y1 = Math.min(yEnd, (sy << 4) + 15);
+                                        ExtendedBlockStorage storage = storages[sy];
+                                        int shapes;
+
+                                        if (isStone)
+                                        {
+                                            shapes = -1;
+                                        }
+                                        else if (storage == Chunk.NULL_BLOCK_STORAGE)
+                                        {
+                                            continue;
+                                        }
+                                        else
+                                        {
+                                            shapes = storage.getCollisionShapes(x & 15, z & 15);
+
+                                            // Only air in this part of the column
+                                            if (shapes == SHAPES_EMPTY)
                                             {
-                                                if (x < -30000000 || x >= 30000000 || z < -30000000 || z >= 30000000)
-                                                {
-                                                    return true;
-                                                }
+                                                continue;
                                             }
-                                            else if (entityIn != null && flag == flag1)
+                                        }
+
+                                        for (int y = y0; y <= y1; ++y)
+                                        {
+                                            int shape = isStone ? SHAPE_FULL : (shapes >>> ((y & 15) << 1)) & 3;
+
+                                            if (shape == SHAPE_EMPTY)
                                             {
-                                                entityIn.setOutsideBorder(! flag1);
+                                                continue;
                                             }
 
                                             posMutable.setPos(x, y, z);
-                                            IBlockState state;
+                                            IBlockState state = null;
 
-                                            if (! p_191504_3_ && ! worldborder.contains(posMutable) && flag1)
+                                            if (shape == SHAPE_UNKNOWN)
                                             {
-                                                state = stateStone;
+                                                state = storage.get(x & 15, y & 15, z & 15);
+                                                shape = getShape(world, posMutable, state);
+                                                storage.setCollisionShape(x & 15, y & 15, z & 15, shape);
                                             }
-                                            else
+
+                                            if (shape == SHAPE_FULL)
                                             {
-                                                state = chunk.getBlockState(posMutable);
+                                                if (x + 1 > aabb.minX && x < aabb.maxX && y + 1 > aabb.minY && y < aabb.maxY && z + 1 > aabb.minZ && z < aabb.maxZ)
+                                                {
+                                                    outList.add(new AxisAlignedBB(x, y, z, x + 1, y + 1, z + 1));
+                                                }
                                             }
+                                            else if (shape == SHAPE_COMPLEX)
+                                            {
+                                                if (state == null)
+                                                {
+                                                    state = storage.get(x & 15, y & 15, z & 15);
+                                                }
 
-                                            state.addCollisionBoxToList(world, posMutable.toImmutable(), aabb, outList, entityIn, false);
+                                                state.addCollisionBoxToList(world, posMutable.toImmutable(), aabb, outList, entityIn, false);
+                                            }
 
                                             if (p_191504_3_ && ! outList.isEmpty())
                                             {
@@ -111,4 +175,21 @@ public class CollisionBoxesOptimizations
 
         return !outList.isEmpty();
     }
-}
\ No newline at end of file
+
+    private static int getShape(World world, BlockPos pos, IBlockState state)
+    {
+        if (state.getBlock() == Blocks.AIR)
+        {
+            return SHAPE_EMPTY;
+        }
+
+        // Only blocks whose box can't change without the block state changing, shulker boxes and moving blocks
+        // get their box from the tile entity but aren't full cubes
+        if (state.isFullCube() && state.getCollisionBoundingBox(world, pos) == Block.FULL_BLOCK_AABB)
+        {
+            return SHAPE_FULL;
+        }
+
+        return SHAPE_COMPLEX;
+    }
+}
@@ -0,0 +1,73 @@
+package carpet.helpers;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityLiving;
+import net.minecraft.entity.EnumCreatureType;
+
+/**
+ * Number of entities in the loaded entity list of a world that count towards each mob cap,
+ * the same numbers World.countEntities gives, kept up to date as entities are added, removed or made persistent.
+ * Used by the spawner with optimizedMobSpawning, but always maintained so the rule can be switched on at any time.
+ */
+public class CreatureCounts {
+    private static final EnumCreatureType[] TYPES = EnumCreatureType.values();
+    private static final Reference2IntOpenHashMap<Class<?>> typeMasks = new Reference2IntOpenHashMap<>();
+
+    static {
+        typeMasks.defaultReturnValue(-1);
+    }
+
+    private final int[] counts = new int[TYPES.length];
+
+    public void onEntityAdded(Entity entity) {
+        if (entity.creatureCounts != null) return;
+        entity.creatureCounts = this;
+        entity.countedCreatureTypes = getCountedTypes(entity);
+        add(entity.countedCreatureTypes, 1);
+    }
+
+    public void onEntityRemoved(Entity entity) {
+        if (entity.creatureCounts != this) return;
+        add(entity.countedCreatureTypes, -1);
+        entity.creatureCounts = null;
+        entity.countedCreatureTypes = 0;
+    }
+
+    /**
+     * Persistent mobs don't count towards the mob caps
+     */
+    public static void onPersistenceChanged(EntityLiving entity) {
+        CreatureCounts counts = entity.creatureCounts;
+        if (counts == null) return;
+        int types = getCountedTypes(entity);
+        if (types == entity.countedCreatureTypes) return;
+        counts.add(entity.countedCreatureTypes, -1);
+        counts.add(types, 1);
+        entity.countedCreatureTypes = types;
+    }
+
+    public int get(EnumCreatureType type) {
+        return counts[type.ordinal()];
+    }
+
+    private void add(int types, int amount) {
+        for (int i = 0; types != 0; i++, types >>>= 1) {
+            if ((types & 1) != 0) counts[i] += amount;
+        }
+    }
+
+    private static int getCountedTypes(Entity entity) {
+        if (entity instanceof EntityLiving && ((EntityLiving) entity).isNoDespawnRequired()) return 0;
+        Class<?> cls = entity.getClass();
+        int types = typeMasks.getInt(cls);
+        if (types < 0) {
+            types = 0;
+            for (EnumCreatureType type : TYPES) {
+                if (type.getCreatureClass().isAssignableFrom(cls)) types |= 1 << type.ordinal();
+            }
+            typeMasks.put(cls, types);
+        }
+        return types;
+    }
+}
@@ -0,0 +1,68 @@
+package carpet.helpers;
+
+import com.google.common.base.Predicate;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.ClassInheritanceMultiMap;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entity lookup of EntityLivingBase.collideWithNearbyEntities with maxEntityCollisions, which stops once it has
+ * found everything the entity can still use instead of listing the whole crowd for every member of it.
+ * Entities are found in the same order as World.getEntitiesInAABBexcluding lists them, so the same ones get pushed.
+ */
+public class EntityCollisions {
+    /**
+     * Lists the entities colliding with the entity, stopping once there are at least maxCollisions of them
+     * and at least maxCramming that aren't riding, so the cramming check still sees whether there are enough
+     * @param maxCramming Value of the maxEntityCramming game rule, not counted if 0 or less
+     */
+    public static List<Entity> getCollidingEntities(Entity entity, Predicate<? super Entity> filter, int maxCollisions, int maxCramming) {
+        List<Entity> list = new ArrayList<>();
+        World world = entity.world;
+        AxisAlignedBB aabb = entity.getEntityBoundingBox();
+        int minChunkX = MathHelper.floor((aabb.minX - 2.0D) / 16.0D);
+        int maxChunkX = MathHelper.floor((aabb.maxX + 2.0D) / 16.0D);
+        int minChunkZ = MathHelper.floor((aabb.minZ - 2.0D) / 16.0D);
+        int maxChunkZ = MathHelper.floor((aabb.maxZ + 2.0D) / 16.0D);
+        int minSection = MathHelper.clamp(MathHelper.floor((aabb.minY - 2.0D) / 16.0D), 0, 15);
+        int maxSection = MathHelper.clamp(MathHelper.floor((aabb.maxY + 2.0D) / 16.0D), 0, 15);
+        int notRiding = 0;
+
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                if (!world.isChunkLoaded(chunkX, chunkZ, true)) continue;
+                Chunk chunk = world.getChunk(chunkX, chunkZ);
+                ClassInheritanceMultiMap<Entity>[] entityLists = chunk.getEntityLists();
+
+                for (int section = minSection; section <= maxSection; section++) {
+                    if (entityLists[section].isEmpty()) continue;
+                    for (Entity other : entityLists[section]) {
+                        if (!other.getEntityBoundingBox().intersects(aabb) || other == entity) continue;
+                        if (filter.apply(other)) {
+                            list.add(other);
+                            if (!other.isRiding()) notRiding++;
+                        }
+                        Entity[] parts = other.getParts();
+                        if (parts != null) {
+                            for (Entity part : parts) {
+                                if (part != entity && part.getEntityBoundingBox().intersects(aabb) && filter.apply(part)) {
+                                    list.add(part);
+                                    if (!part.isRiding()) notRiding++;
+                                }
+                            }
+                        }
+                        // whatever has been found so far is the start of the full list
+                        if (list.size() >= maxCollisions && notRiding >= maxCramming) return list;
+                    }
+                }
+            }
+        }
+        return list;
+    }
+}
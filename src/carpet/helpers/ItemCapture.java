@@ -0,0 +1,56 @@
+package carpet.helpers;
+
+import net.minecraft.entity.item.EntityItem;
+import net.minecraft.inventory.IInventory;
+import net.minecraft.tileentity.IHopper;
+import net.minecraft.tileentity.TileEntityHopper;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+
+import java.util.List;
+
+/**
+ * Item capture of hoppers and hopper minecarts with optimizedItemCapture, reading the per section item lists
+ * of the chunks instead of collecting all entities in the box into a new list.
+ * Items are offered in the same order as World.getEntitiesWithinAABB lists them, so sorters behave the same.
+ */
+public class ItemCapture {
+    /**
+     * Offers the living items touching the box to the hopper until one is taken completely
+     * @param firstOnly Only offer the first item, like hopper minecarts do
+     * @return Whether an item was taken completely
+     */
+    public static boolean capture(IHopper hopper, double minX, double minY, double minZ, double maxX, double maxY, double maxZ, boolean firstOnly) {
+        World world = hopper.getWorld();
+        int minChunkX = MathHelper.floor((minX - 2.0D) / 16.0D);
+        int maxChunkX = MathHelper.ceil((maxX + 2.0D) / 16.0D);
+        int minChunkZ = MathHelper.floor((minZ - 2.0D) / 16.0D);
+        int maxChunkZ = MathHelper.ceil((maxZ + 2.0D) / 16.0D);
+        int minSection = MathHelper.clamp(MathHelper.floor((minY - 2.0D) / 16.0D), 0, 15);
+        int maxSection = MathHelper.clamp(MathHelper.floor((maxY + 2.0D) / 16.0D), 0, 15);
+
+        for (int chunkX = minChunkX; chunkX < maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ < maxChunkZ; chunkZ++) {
+                if (!world.isChunkLoaded(chunkX, chunkZ, true)) continue;
+                Chunk chunk = world.getChunk(chunkX, chunkZ);
+                // nothing to capture, the usual case for item sorters
+                if (chunk.getItemCount() == 0) continue;
+
+                for (int section = minSection; section <= maxSection; section++) {
+                    List<EntityItem> items = chunk.getItemsInSection(section);
+                    for (int i = 0; i < items.size(); i++) {
+                        EntityItem item = items.get(i);
+                        AxisAlignedBB box = item.getEntityBoundingBox();
+                        if (box.minX < maxX && box.maxX > minX && box.minY < maxY && box.maxY > minY && box.minZ < maxZ && box.maxZ > minZ && item.isEntityAlive()) {
+                            if (TileEntityHopper.putDropInInventoryAllSlots((IInventory) null, hopper, item)) return true;
+                            if (firstOnly) return false;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
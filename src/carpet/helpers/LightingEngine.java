@@ -4,6 +4,8 @@ package carpet.helpers;
  * Copyright PhiPro
  */
 
+import carpet.CarpetSettings;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.profiler.Profiler;
 import net.minecraft.util.EnumFacing;
@@ -51,6 +53,8 @@ public class LightingEngine {
     private static final long[] neighborShifts = new long[6];
     //Mask to extract chunk idenitfier
     private static final long mChunk = ((mX >> 4) << (4 + sX)) | ((mZ >> 4) << (4 + sZ));
+    //Mask to extract section identifier
+    private static final long mSection = mChunk | ((mY >> 4) << (4 + sY));
     private static final int CACHED_QUEUE_SEGMENTS_COUNT = 1 << 12;
     private static final int QUEUE_SEGMENT_SIZE = 1 << 10;
 
@@ -89,6 +93,17 @@ public class LightingEngine {
     private long curData;
     //Cached data about neighboring blocks (of tempPos)
     private boolean isNeighborDataValid = false;
+    //batchedLightUpdates: positions queued since the last sweep, per light type
+    private final LongOpenHashSet[] queuedPositions = new LongOpenHashSet[EnumSkyBlock.values().length];
+    //batchedLightUpdates: sections whose light may change in the next sweep (the sections of queued updates and their neighbors), per light type
+    private final LongOpenHashSet[] affectedSections = new LongOpenHashSet[EnumSkyBlock.values().length];
+    private final long[] lastSection = new long[EnumSkyBlock.values().length];
+    //Counters shown by /profile lighting
+    private long queuedCount;
+    private long deduplicatedCount;
+    private long processedCount;
+    private long sweepCount;
+    private long skippedFlushCount;
 
     public LightingEngine(final World world) {
         this.world = world;
@@ -96,6 +111,9 @@ public class LightingEngine {
 
         for (int i = 0; i < EnumSkyBlock.values().length; ++i) {
             this.queuedLightUpdates[i] = new PooledLongQueue();
+            this.queuedPositions[i] = new LongOpenHashSet();
+            this.affectedSections[i] = new LongOpenHashSet();
+            this.lastSection[i] = -1;
         }
 
         for (int i = 0; i < this.queuedDarkenings.length; ++i) {
@@ -143,6 +161,17 @@ public class LightingEngine {
     private void scheduleLightUpdate(final EnumSkyBlock lightType, final long pos) {
         final PooledLongQueue queue = this.queuedLightUpdates[lightType.ordinal()];
 
+        if (CarpetSettings.batchedLightUpdates && !this.updating) {
+            //the same position is checked only once per sweep
+            if (!this.queuedPositions[lightType.ordinal()].add(pos)) {
+                ++this.deduplicatedCount;
+                return;
+            }
+
+            this.markAffectedSections(lightType, pos);
+        }
+
+        ++this.queuedCount;
         queue.add(pos);
 
         //make sure there are not too many queued light updates
@@ -151,6 +180,54 @@ public class LightingEngine {
         }
     }
 
+    /**
+     * Light changes spread at most 15 blocks, so an update can only affect its own section and the ones around it
+     */
+    private void markAffectedSections(final EnumSkyBlock lightType, final long pos) {
+        final long section = pos & mSection;
+
+        if (section == this.lastSection[lightType.ordinal()]) {
+            return;
+        }
+
+        this.lastSection[lightType.ordinal()] = section;
+        final LongOpenHashSet sections = this.affectedSections[lightType.ordinal()];
+
+        if (sections.contains(section)) {
+            return;
+        }
+
+        for (long dy = -16; dy <= 16; dy += 16) {
+            for (long dx = -16; dx <= 16; dx += 16) {
+                for (long dz = -16; dz <= 16; dz += 16) {
+                    sections.add(section + (dy << sY) + (dx << sX) + (dz << sZ));
+                }
+            }
+        }
+    }
+
+    /**
+     * Processes light updates of the given light type before the light at pos is read.
+     * With batchedLightUpdates queued updates are left for the end of tick sweep unless they can change the light at pos.
+     */
+    public void procLightUpdates(final EnumSkyBlock lightType, final BlockPos pos) {
+        if (CarpetSettings.batchedLightUpdates && !this.queuedLightUpdates[lightType.ordinal()].isEmpty()
+                && !this.affectedSections[lightType.ordinal()].contains(posToLong(pos) & mSection)) {
+            ++this.skippedFlushCount;
+            return;
+        }
+
+        this.procLightUpdates(lightType);
+    }
+
+    /**
+     * Calls {@link #procLightUpdates(EnumSkyBlock, BlockPos)} for both light types
+     */
+    public void procLightUpdates(final BlockPos pos) {
+        this.procLightUpdates(EnumSkyBlock.SKY, pos);
+        this.procLightUpdates(EnumSkyBlock.BLOCK, pos);
+    }
+
     /**
      * Calls {@link #procLightUpdates(EnumSkyBlock)} for both light types
      */
@@ -177,6 +254,10 @@ public class LightingEngine {
 
         this.updating = true;
         this.curChunkIdentifier = -1; //reset chunk cache
+        ++this.sweepCount;
+        this.queuedPositions[lightType.ordinal()].clear();
+        this.affectedSections[lightType.ordinal()].clear();
+        this.lastSection[lightType.ordinal()] = -1;
 
         this.profiler.startSection("lighting");
 
@@ -186,6 +267,8 @@ public class LightingEngine {
 
         //process the queued updates and enqueue them for further processing
         for (this.curQueue = queue; this.nextItem(); ) {
+            ++this.processedCount;
+
             if (this.curChunk == null) {
                 continue;
             }
@@ -452,6 +535,34 @@ public class LightingEngine {
         return MathHelper.clamp(state.getLightOpacity(), 1, MAX_LIGHT);
     }
 
+    public long getQueuedCount() {
+        return this.queuedCount;
+    }
+
+    public long getDeduplicatedCount() {
+        return this.deduplicatedCount;
+    }
+
+    public long getProcessedCount() {
+        return this.processedCount;
+    }
+
+    public long getSweepCount() {
+        return this.sweepCount;
+    }
+
+    public long getSkippedFlushCount() {
+        return this.skippedFlushCount;
+    }
+
+    public void resetCounters() {
+        this.queuedCount = 0;
+        this.deduplicatedCount = 0;
+        this.processedCount = 0;
+        this.sweepCount = 0;
+        this.skippedFlushCount = 0;
+    }
+
     //PooledLongQueue code
     //Implement own queue with pooled segments to reduce allocation costs and reduce idle memory footprint
 
@@ -0,0 +1,206 @@
+package carpet.helpers;
+
+import carpet.CarpetSettings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.EnumConnectionState;
+import net.minecraft.network.EnumPacketDirection;
+import net.minecraft.network.play.server.SPacketChunkData;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * Shared state of the network compression encoders: one Deflater per thread instead of one per connection,
+ * the worker pool large packets are compressed on when packetCompressionThreads is above 0,
+ * and a cache of compressed chunk data with compressedChunkCache, since the same chunk is usually sent to every player around it.
+ */
+public class PacketCompression {
+    /** Packets at least this big are compressed on the workers */
+    public static final int OFFLOAD_SIZE = 16384;
+    private static final int QUEUE_SIZE = 256;
+    private static final int CACHE_ENTRIES = 64;
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    /** packetCompressionThreads, set by its validator so the pool changes together with the rule */
+    private static volatile int threads;
+    private static ExecutorService workers;
+    private static int workerCount;
+    private static int chunkPacketId = -1;
+
+    private static final Map<CacheKey, byte[]> chunkCache = new LinkedHashMap<CacheKey, byte[]>(CACHE_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, byte[]> eldest) {
+            return size() > CACHE_ENTRIES;
+        }
+    };
+
+    private static final AtomicLong offloaded = new AtomicLong();
+    private static final AtomicLong cacheHits = new AtomicLong();
+    private static final AtomicLong cacheMisses = new AtomicLong();
+
+    public static boolean isOffloadEnabled() {
+        return threads > 0;
+    }
+
+    public static boolean isCacheEnabled() {
+        return CarpetSettings.compressedChunkCache;
+    }
+
+    /**
+     * Called when packetCompressionThreads changes, stops the workers if their number is no longer right
+     */
+    public static synchronized void setThreads(int count) {
+        threads = count;
+        if (workers != null && workerCount != count) {
+            // already submitted packets still get compressed
+            workers.shutdown();
+            workers = null;
+            workerCount = 0;
+        }
+    }
+
+    /**
+     * @return The pool for compressing large packets, created for the current number of threads if needed.
+     * Once its queue is full the event loop compresses the packet itself.
+     * @throws RejectedExecutionException If offloading was switched off in the meantime
+     */
+    public static synchronized ExecutorService getWorkers() {
+        if (threads <= 0) {
+            throw new RejectedExecutionException("Packet compression is not offloaded");
+        }
+        if (workers == null) {
+            workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE),
+                    new ThreadFactoryBuilder().setNameFormat("Packet Compression Worker #%d").setDaemon(true).build(),
+                    (task, executor) -> {
+                        if (executor.isShutdown()) {
+                            throw new RejectedExecutionException("Packet compression pool was resized");
+                        }
+                        task.run();
+                    });
+            workerCount = threads;
+        }
+        return workers;
+    }
+
+    /**
+     * Deflates the packet with the Deflater of the calling thread straight into the buffer,
+     * only chunk data that goes into the cache is compressed to an array first
+     * @param data The uncompressed packet, starting with its id
+     * @param useCache Whether chunk data is looked up in and added to the cache
+     * @param out Gets the compressed bytes, without the length prefix
+     */
+    public static void compress(byte[] data, int length, boolean useCache, ByteBuf out) {
+        if (useCache && isChunkPacket(data, length)) {
+            out.writeBytes(compressCached(data, length));
+            return;
+        }
+        Deflater deflater = DEFLATER.get();
+        byte[] buffer = BUFFER.get();
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.writeBytes(buffer, 0, n);
+        }
+        deflater.reset();
+    }
+
+    private static byte[] compressCached(byte[] data, int length) {
+        CacheKey key = new CacheKey(data, length);
+        byte[] cached;
+        synchronized (chunkCache) {
+            cached = chunkCache.get(key);
+        }
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            return cached;
+        }
+        cacheMisses.incrementAndGet();
+
+        Deflater deflater = DEFLATER.get();
+        byte[] buffer = BUFFER.get();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(length / 4, 64));
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        deflater.reset();
+        byte[] compressed = out.toByteArray();
+
+        synchronized (chunkCache) {
+            chunkCache.put(key, compressed);
+        }
+        return compressed;
+    }
+
+    public static void onOffloaded() {
+        offloaded.incrementAndGet();
+    }
+
+    public static long getOffloaded() {
+        return offloaded.get();
+    }
+
+    public static long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public static long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    public static void resetStats() {
+        offloaded.set(0L);
+        cacheHits.set(0L);
+        cacheMisses.set(0L);
+    }
+
+    private static boolean isChunkPacket(byte[] data, int length) {
+        if (chunkPacketId < 0) {
+            try {
+                chunkPacketId = EnumConnectionState.PLAY.getPacketId(EnumPacketDirection.CLIENTBOUND, new SPacketChunkData());
+            } catch (Exception e) {
+                return false;
+            }
+        }
+        // the id is a varint, chunk data has a single byte one
+        return length >= OFFLOAD_SIZE && data[0] == chunkPacketId;
+    }
+
+    /**
+     * Chunk data compared by content, the packets sent to different players are different objects
+     */
+    private static class CacheKey {
+        private final byte[] data;
+        private final int hash;
+
+        private CacheKey(byte[] data, int length) {
+            this.data = data.length == length ? data : Arrays.copyOf(data, length);
+            this.hash = Arrays.hashCode(this.data);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CacheKey && ((CacheKey) o).hash == hash && Arrays.equals(((CacheKey) o).data, data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package carpet.helpers;
+
+import carpet.utils.Messenger;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.AnvilChunkLoader;
+import net.minecraft.world.chunk.storage.RegionFileCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares save throughput and size of the region file codecs on chunks of a loaded world.
+ * Runs on the main thread, so it is limited to a sample of the loaded chunks.
+ */
+public class RegionCodecBenchmark {
+    private static final int ROUNDS = 3;
+
+    public static void run(ICommandSender sender, WorldServer world, int maxChunks) {
+        List<NBTTagCompound> chunks = new ArrayList<>();
+        for (Chunk chunk : world.getChunkProvider().getLoadedChunks()) {
+            if (chunks.size() >= maxChunks) {
+                break;
+            }
+            NBTTagCompound compound = new NBTTagCompound();
+            NBTTagCompound level = new NBTTagCompound();
+            compound.setTag("Level", level);
+            compound.setInteger("DataVersion", 1343);
+            AnvilChunkLoader.writeChunkToNBT(chunk, world, level);
+            chunks.add(compound);
+        }
+        if (chunks.isEmpty()) {
+            Messenger.m(sender, "r No loaded chunks to test with");
+            return;
+        }
+
+        try {
+            long raw = encode(chunks, RegionFileCodec.NONE, -1, new ByteArrayOutputStream(1 << 16));
+            Messenger.m(sender, String.format("w Encoding %d chunks, %.1fKB of NBT, best of %d rounds:", chunks.size(), raw / 1024.0D, ROUNDS));
+            report(sender, "deflate (default)", chunks, RegionFileCodec.DEFLATE, -1, raw);
+            report(sender, "deflate level 1", chunks, RegionFileCodec.DEFLATE, 1, raw);
+            report(sender, "deflate level 9", chunks, RegionFileCodec.DEFLATE, 9, raw);
+            report(sender, "gzip (default)", chunks, RegionFileCodec.GZIP, -1, raw);
+            report(sender, "none", chunks, RegionFileCodec.NONE, -1, raw);
+        } catch (IOException e) {
+            Messenger.m(sender, "r Benchmark failed: " + e.getMessage());
+        }
+    }
+
+    private static void report(ICommandSender sender, String name, List<NBTTagCompound> chunks, RegionFileCodec codec, int level, long raw) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 16);
+        long best = Long.MAX_VALUE;
+        long size = 0L;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            size = encode(chunks, codec, level, buffer);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        Messenger.m(sender, String.format("w  - %s: %.1fms, %.1fMB/s, %.1fKB (%.1f%%)", name,
+                best / 1000000.0D, raw * 1000.0D / Math.max(best, 1L), size / 1024.0D, 100.0D * size / raw));
+    }
+
+    /**
+     * @return Total encoded size of the chunks
+     */
+    private static long encode(List<NBTTagCompound> chunks, RegionFileCodec codec, int level, ByteArrayOutputStream buffer) throws IOException {
+        long size = 0L;
+        for (NBTTagCompound compound : chunks) {
+            buffer.reset();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(codec.wrap(buffer, level)));
+            CompressedStreamTools.write(compound, out);
+            out.close();
+            size += buffer.size();
+        }
+        return size;
+    }
+}
@@ -10,6 +10,10 @@ import net.minecraft.util.ITickable;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import net.minecraft.block.BlockHopper;
+import carpet.logging.LoggerRegistry;
+import carpet.utils.SpawnReporter;
+
+import java.util.Arrays;
 
 // This class contains the code responsible for optimizing tile entities by making them sleep until they receive an update.
 // It contains an interface that all optimized tile entities must implement, and the code responsible for propagating the updates.
@@ -26,6 +30,52 @@ public class TileEntityOptimizer
          * {@linkplain net.minecraft.world.World#updateComparatorOutputLevel(net.minecraft.util.math.BlockPos, net.minecraft.block.Block)}
          */
         public void wakeUp();
+
+        /**
+         * CARPET-optimizedTileEntities: Whether the tile entity skips all or part of its update, for the lazyTileEntities logger
+         */
+        public boolean isSleeping();
+    }
+
+    // What woke up a lazy tile entity, shown by the lazyTileEntities logger
+    public enum WakeUpCause
+    {
+        INVENTORY("own inventory"),
+        NEIGHBOR("neighbor inventory"),
+        BLOCK_EVENT("block event");
+
+        public final String description;
+
+        WakeUpCause(String description)
+        {
+            this.description = description;
+        }
+    }
+
+    // Wake ups since the logger last showed them, by dimension (overworld, nether, end) and cause
+    private static final long[][] wakeUps = new long[3][WakeUpCause.values().length];
+
+    // Wakes up the tile entity, counting it for the lazyTileEntities logger if it was asleep
+    public static void wakeUp(World worldIn, ILazyTileEntity tileEntity, WakeUpCause cause)
+    {
+        if (LoggerRegistry.__lazyTileEntities && !worldIn.isRemote && tileEntity.isSleeping())
+        {
+            ++wakeUps[SpawnReporter.dimension_index(worldIn.provider.getDimensionType().getId())][cause.ordinal()];
+        }
+        tileEntity.wakeUp();
+    }
+
+    public static long getWakeUps(int dimensionIndex, WakeUpCause cause)
+    {
+        return wakeUps[dimensionIndex][cause.ordinal()];
+    }
+
+    public static void resetWakeUps()
+    {
+        for (long[] counts : wakeUps)
+        {
+            Arrays.fill(counts, 0L);
+        }
     }
 
     // The method called by the world object when a comparator update happens. Wakes up the tile entity causing it, and nearby hoppers.
@@ -38,7 +88,7 @@ public class TileEntityOptimizer
             TileEntity tileEntity = worldIn.getTileEntity(pos);
             if(tileEntity instanceof ILazyTileEntity)
             {
-                ((ILazyTileEntity) tileEntity).wakeUp();
+                wakeUp(worldIn, (ILazyTileEntity) tileEntity, WakeUpCause.INVENTORY);
             }
         }
 
@@ -76,7 +126,7 @@ public class TileEntityOptimizer
                     if((enumfacing == EnumFacing.DOWN || enumfacing == BlockHopper.getFacing(tileEntity.getBlockMetadata()).getOpposite())
                             && tileEntity instanceof ILazyTileEntity)
                     {
-                        ((ILazyTileEntity) tileEntity).wakeUp();
+                        wakeUp(worldIn, (ILazyTileEntity) tileEntity, WakeUpCause.NEIGHBOR);
                     }
                 }
             }
@@ -0,0 +1,99 @@
+package carpet.helpers;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.NextTickListEntry;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Secondary index from chunk position to the scheduled tile ticks in that chunk.
+ * Entries are tracked by identity so duplicates let through by the vanilla HashSet are indexed separately.
+ */
+public class TileTickChunkIndex {
+    private final Long2ObjectOpenHashMap<Set<NextTickListEntry>> chunks = new Long2ObjectOpenHashMap<>();
+
+    public void add(NextTickListEntry entry) {
+        long chunk = chunkKey(entry.position);
+        Set<NextTickListEntry> inChunk = chunks.get(chunk);
+        if (inChunk == null) {
+            inChunk = Collections.newSetFromMap(new IdentityHashMap<>());
+            chunks.put(chunk, inChunk);
+        }
+        inChunk.add(entry);
+    }
+
+    public void remove(NextTickListEntry entry) {
+        long chunk = chunkKey(entry.position);
+        Set<NextTickListEntry> inChunk = chunks.get(chunk);
+        if (inChunk != null) {
+            inChunk.remove(entry);
+            if (inChunk.isEmpty()) {
+                chunks.remove(chunk);
+            }
+        }
+    }
+
+    public void clear() {
+        chunks.clear();
+    }
+
+    /**
+     * @return The scheduled ticks in the chunk, in no particular order
+     */
+    public Collection<NextTickListEntry> get(int chunkX, int chunkZ) {
+        Set<NextTickListEntry> inChunk = chunks.get(ChunkPos.asLong(chunkX, chunkZ));
+        return inChunk == null ? Collections.emptySet() : Collections.unmodifiableSet(inChunk);
+    }
+
+    public void addAllTo(Collection<NextTickListEntry> out) {
+        for (Set<NextTickListEntry> inChunk : chunks.values()) {
+            out.addAll(inChunk);
+        }
+    }
+
+    /**
+     * Adds the entries inside the box to out, in no particular order.
+     * Only the chunks overlapping the box are visited unless the box spans more chunks than are indexed.
+     */
+    public void collect(StructureBoundingBox box, List<NextTickListEntry> out) {
+        int minChunkX = box.minX >> 4;
+        int maxChunkX = (box.maxX - 1) >> 4;
+        int minChunkZ = box.minZ >> 4;
+        int maxChunkZ = (box.maxZ - 1) >> 4;
+        long area = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+        if (area <= chunks.size()) {
+            for (int x = minChunkX; x <= maxChunkX; x++) {
+                for (int z = minChunkZ; z <= maxChunkZ; z++) {
+                    collect(chunks.get(ChunkPos.asLong(x, z)), box, out);
+                }
+            }
+        } else {
+            for (Set<NextTickListEntry> inChunk : chunks.values()) {
+                collect(inChunk, box, out);
+            }
+        }
+    }
+
+    private static void collect(Set<NextTickListEntry> inChunk, StructureBoundingBox box, List<NextTickListEntry> out) {
+        if (inChunk == null) {
+            return;
+        }
+        for (NextTickListEntry entry : inChunk) {
+            BlockPos pos = entry.position;
+            if (pos.getX() >= box.minX && pos.getX() < box.maxX && pos.getZ() >= box.minZ && pos.getZ() < box.maxZ) {
+                out.add(entry);
+            }
+        }
+    }
+
+    private static long chunkKey(BlockPos pos) {
+        return ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+    }
+}
@@ -0,0 +1,195 @@
+package carpet.helpers;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongHeapPriorityQueue;
+import net.minecraft.world.NextTickListEntry;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Alternative to the TreeSet + HashSet pair WorldServer keeps scheduled tile ticks in.
+ * Entries are bucketed by their scheduled game time, each bucket stays sorted by priority and entry id
+ * so draining the buckets in time order yields exactly the TreeSet order.
+ * Entries are also indexed by chunk so per-chunk lookups don't have to walk every pending tick.
+ */
+public class TileTickScheduler {
+    /**
+     * Membership is kept in a plain HashSet on purpose, it makes duplicate detection behave exactly like
+     * the vanilla pendingTickListEntriesHashSet, including what doubleTileTickSchedulingFix changes
+     */
+    private final Set<NextTickListEntry> entries = new HashSet<>();
+    private final Long2ObjectOpenHashMap<Bucket> buckets = new Long2ObjectOpenHashMap<>();
+    // may contain times of buckets that have been emptied in the meantime, those are skipped when polling
+    private final LongHeapPriorityQueue times = new LongHeapPriorityQueue();
+    private final TileTickChunkIndex chunks = new TileTickChunkIndex();
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public boolean contains(NextTickListEntry entry) {
+        return entries.contains(entry);
+    }
+
+    public boolean add(NextTickListEntry entry) {
+        // contains before add, mirroring the vanilla calls
+        if (entries.contains(entry)) {
+            return false;
+        }
+        entries.add(entry);
+        Bucket bucket = buckets.get(entry.scheduledTime);
+        if (bucket == null) {
+            bucket = new Bucket();
+            buckets.put(entry.scheduledTime, bucket);
+            times.enqueue(entry.scheduledTime);
+        }
+        bucket.insert(entry);
+        chunks.add(entry);
+        return true;
+    }
+
+    /**
+     * @return The entry that would come first in the vanilla TreeSet, or null if there are none
+     */
+    public NextTickListEntry first() {
+        Bucket bucket = firstBucket();
+        return bucket == null ? null : bucket.peek();
+    }
+
+    /**
+     * Removes and returns the first entry, the equivalent of TreeSet.first() followed by removing it from both sets
+     */
+    public NextTickListEntry pollFirst() {
+        Bucket bucket = firstBucket();
+        if (bucket == null) {
+            return null;
+        }
+        NextTickListEntry entry = bucket.poll();
+        if (bucket.isEmpty()) {
+            buckets.remove(entry.scheduledTime);
+            times.dequeueLong();
+        }
+        entries.remove(entry);
+        chunks.remove(entry);
+        return entry;
+    }
+
+    private Bucket firstBucket() {
+        while (!times.isEmpty()) {
+            Bucket bucket = buckets.get(times.firstLong());
+            if (bucket != null) {
+                return bucket;
+            }
+            times.dequeueLong();
+        }
+        return null;
+    }
+
+    private void remove(NextTickListEntry entry) {
+        entries.remove(entry);
+        Bucket bucket = buckets.get(entry.scheduledTime);
+        if (bucket != null) {
+            bucket.remove(entry);
+            if (bucket.isEmpty()) {
+                buckets.remove(entry.scheduledTime);
+            }
+        }
+    }
+
+    /**
+     * Collects the entries inside the box in TreeSet order, optionally removing them.
+     */
+    public void collect(StructureBoundingBox box, boolean remove, List<NextTickListEntry> out) {
+        int start = out.size();
+        chunks.collect(box, out);
+        List<NextTickListEntry> found = out.subList(start, out.size());
+        Collections.sort(found);
+        if (remove) {
+            for (NextTickListEntry entry : found) {
+                remove(entry);
+                chunks.remove(entry);
+            }
+        }
+    }
+
+    /**
+     * @return The scheduled ticks in the chunk, in no particular order
+     */
+    public Collection<NextTickListEntry> getChunk(int chunkX, int chunkZ) {
+        return chunks.get(chunkX, chunkZ);
+    }
+
+    /**
+     * @return All entries in TreeSet order, meant for debugging and for switching back to the vanilla scheduler
+     */
+    public List<NextTickListEntry> toSortedList() {
+        List<NextTickListEntry> list = new ArrayList<>(entries.size());
+        chunks.addAllTo(list);
+        Collections.sort(list);
+        return list;
+    }
+
+    /**
+     * Entries scheduled for the same game time, sorted by priority and id.
+     * New entries almost always have the highest id so inserting is usually an append.
+     */
+    private static class Bucket {
+        private NextTickListEntry[] items = new NextTickListEntry[8];
+        private int head = 0;
+        private int tail = 0;
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+
+        NextTickListEntry peek() {
+            return items[head];
+        }
+
+        NextTickListEntry poll() {
+            NextTickListEntry entry = items[head];
+            items[head++] = null;
+            return entry;
+        }
+
+        void insert(NextTickListEntry entry) {
+            if (tail == items.length) {
+                if (head > items.length / 2) {
+                    System.arraycopy(items, head, items, 0, tail - head);
+                    Arrays.fill(items, tail - head, tail, null);
+                    tail -= head;
+                    head = 0;
+                } else {
+                    items = Arrays.copyOf(items, items.length * 2);
+                }
+            }
+            int index = tail;
+            if (index > head && items[index - 1].compareTo(entry) > 0) {
+                index = -Arrays.binarySearch(items, head, tail, entry) - 1;
+            }
+            System.arraycopy(items, index, items, index + 1, tail - index);
+            items[index] = entry;
+            tail++;
+        }
+
+        void remove(NextTickListEntry entry) {
+            int index = Arrays.binarySearch(items, head, tail, entry);
+            if (index < 0 || items[index] != entry) {
+                return;
+            }
+            System.arraycopy(items, index + 1, items, index, tail - index - 1);
+            items[--tail] = null;
+        }
+    }
+}
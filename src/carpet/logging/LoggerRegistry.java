@@ -51,6 +51,7 @@ public class LoggerRegistry
     public static boolean __recipes;
     public static boolean __damageDebug;
     public static boolean __invisDebug;
+    public static boolean __lazyTileEntities;
     public static boolean __carefulBreak;
     public static boolean __normalCameraVision;
 
@@ -78,6 +79,7 @@ public class LoggerRegistry
         registerDebugger("recipes", new Logger(server, "recipes", null, null, LogHandler.CHAT));
         registerDebugger("damageDebug", new Logger(server, "damageDebug", null, null, LogHandler.CHAT));
         registerDebugger("invisDebug", new Logger(server, "invisDebug", null, null, LogHandler.CHAT));
+        registerDebugger("lazyTileEntities", new Logger(server, "lazyTileEntities", null, null, LogHandler.HUD));
 
         registerGeneric("carefulBreak", new Logger(server, "carefulBreak", null, null, LogHandler.CHAT));
         registerGeneric("normalCameraVision", new Logger(server, "normalCameraVision", null, null, LogHandler.CHAT));
@@ -1,8 +1,32 @@
 package carpet.logging.logHelpers;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class PacketCounter
 {
     public static long totalOut=0;
     public static long totalIn=0;
-    public static void reset() {totalIn = 0l; totalOut = 0L; }
+    // flushes happen on the netty threads
+    private static final AtomicLong flushes = new AtomicLong();
+    private static final AtomicLong flushedBytes = new AtomicLong();
+    public static long ticks=0;
+
+    public static void onFlush(long bytes)
+    {
+        flushes.incrementAndGet();
+        flushedBytes.addAndGet(bytes);
+    }
+
+    public static double getFlushesPerTick()
+    {
+        return ticks == 0 ? 0.0D : (double)flushes.get() / ticks;
+    }
+
+    public static double getBytesPerFlush()
+    {
+        long count = flushes.get();
+        return count == 0 ? 0.0D : (double)flushedBytes.get() / count;
+    }
+
+    public static void reset() {totalIn = 0l; totalOut = 0L; ticks = 0L; flushes.set(0L); flushedBytes.set(0L); }
 }
@@ -27,7 +27,7 @@ public class PubSubInfoProvider<T> implements Supplier<T> {
         this.interval = interval;
         this.supplier = null;
         this.function = function;
-        node.provider = this;
+        node.setProvider(this);
     }
 
     public PubSubInfoProvider(PubSubNode node, int interval, Supplier<T> supplier) {
@@ -35,14 +35,20 @@ public class PubSubInfoProvider<T> implements Supplier<T> {
         this.interval = interval;
         this.supplier = supplier;
         this.function = null;
-        node.provider = this;
+        node.setProvider(this);
     }
 
     public PubSubInfoProvider<T> setPhase(int phase) {
+        // re-registering moves the provider to the bucket of its new phase
         this.phase = phase;
+        this.node.setProvider(this);
         return this;
     }
 
+    public int getPhase() {
+        return phase;
+    }
+
     public PubSubInfoProvider<T> setPublishAlways(boolean always) {
         this.publishAlways = always;
         return this;
@@ -1,8 +1,16 @@
 package carpet.pubsub;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 /**
@@ -10,9 +18,17 @@ import java.util.TreeMap;
  * @see carpet.CarpetServer#PUBSUB
  */
 public final class PubSubManager {
-    public final PubSubNode ROOT = new PubSubNode(null, "");
+    public final PubSubNode ROOT = new PubSubNode(this, null, "");
     private final Map<String, PubSubNode> knownNodes = new TreeMap<>();
 
+    /**
+     * Providers of nodes with subscribers, by interval and then by phase,
+     * so each tick only the providers due in that tick are visited
+     */
+    private final Int2ObjectOpenHashMap<Int2ObjectOpenHashMap<Set<PubSubInfoProvider<?>>>> schedule = new Int2ObjectOpenHashMap<>();
+    private final Map<PubSubInfoProvider<?>, Set<PubSubInfoProvider<?>>> scheduledBuckets = new IdentityHashMap<>();
+    private final List<PubSubInfoProvider<?>> dueProviders = new ArrayList<>();
+
     /**
      * Get a node if it already exists.
      * Call this for client-initiated requests
@@ -68,7 +84,35 @@ public final class PubSubManager {
         node.publish(value);
     }
 
+    void schedule(PubSubInfoProvider<?> provider) {
+        unschedule(provider);
+        if (provider.interval <= 0) return;
+        Set<PubSubInfoProvider<?>> bucket = schedule
+                .computeIfAbsent(provider.interval, i -> new Int2ObjectOpenHashMap<>())
+                .computeIfAbsent(provider.getPhase(), p -> new LinkedHashSet<>());
+        bucket.add(provider);
+        scheduledBuckets.put(provider, bucket);
+    }
+
+    void unschedule(PubSubInfoProvider<?> provider) {
+        Set<PubSubInfoProvider<?>> bucket = scheduledBuckets.remove(provider);
+        if (bucket != null) bucket.remove(provider);
+    }
+
+    /**
+     * Publishes the values of all providers due this tick that have subscribers
+     * @param tickCounter Tick counter of the minecraft server
+     */
     public void update(int tickCounter) {
-        ROOT.update(tickCounter);
+        if (scheduledBuckets.isEmpty()) return;
+        for (Int2ObjectMap.Entry<Int2ObjectOpenHashMap<Set<PubSubInfoProvider<?>>>> entry : schedule.int2ObjectEntrySet()) {
+            Set<PubSubInfoProvider<?>> bucket = entry.getValue().get(tickCounter % entry.getIntKey());
+            if (bucket != null) dueProviders.addAll(bucket);
+        }
+        // copied first, publishing may subscribe or unsubscribe
+        for (PubSubInfoProvider<?> provider : dueProviders) {
+            provider.node.publish(provider.get());
+        }
+        dueProviders.clear();
     }
 }
@@ -19,8 +19,14 @@ public class PubSubMessenger implements PluginChannelHandler {
     // reserve id 0 for now
     public static final int PACKET_C2S_SUBSCRIBE = 1;
     public static final int PACKET_C2S_UNSUBSCRIBE = 2;
+    public static final int PACKET_C2S_SET_FORMAT = 3;
 
     public static final int PACKET_S2C_UPDATE = 1;
+    public static final int PACKET_S2C_FORMAT = 2;
+    public static final int PACKET_S2C_COMPACT_UPDATE = 3;
+
+    public static final int FORMAT_LEGACY = 0;
+    public static final int FORMAT_COMPACT = 1;
 
     public static final int TYPE_NBT = 0;
     public static final int TYPE_STRING = 1;
@@ -31,6 +37,9 @@ public class PubSubMessenger implements PluginChannelHandler {
 
     private final PubSubManager pubSub;
     private final Map<EntityPlayerMP, Map<PubSubNode, PubSubSubscriber>> subscriptions = new WeakHashMap<>();
+    // latest value of every node updated since the last flush, per player
+    private final Map<EntityPlayerMP, Map<PubSubNode, Object>> pendingUpdates = new WeakHashMap<>();
+    private final Map<EntityPlayerMP, CompactState> compactStates = new WeakHashMap<>();
 
     public PubSubMessenger(PubSubManager pubSub) {
         this.pubSub = pubSub;
@@ -61,10 +70,10 @@ public class PubSubMessenger implements PluginChannelHandler {
             if (!alreadyAdded) deduplicatedNodes.add(node);
         }
         if (deduplicatedNodes.isEmpty()) return;
-        PubSubSubscriber subscriber = (node, value) -> {
-            PacketBuffer packet = makeUpdatePacket(Collections.singletonMap(node, value));
-            PacketSplitter.send(player, CHANNEL_NAME, packet);
-        };
+        CompactState compactState = compactStates.get(player);
+        // the initial values sent on subscribing have to go through even if they didn't change
+        if (compactState != null) compactState.reset();
+        PubSubSubscriber subscriber = (node, value) -> pendingUpdates.computeIfAbsent(player, p -> new LinkedHashMap<>()).put(node, value);
         for (PubSubNode node : deduplicatedNodes) {
             playerSubscriptions.put(node, subscriber);
             pubSub.subscribe(node, subscriber);
@@ -83,6 +92,20 @@ public class PubSubMessenger implements PluginChannelHandler {
         }
     }
 
+    /**
+     * Sends every player the values updated since the last call in a single packet, called once per tick
+     */
+    public void flush() {
+        for (Map.Entry<EntityPlayerMP, Map<PubSubNode, Object>> entry : pendingUpdates.entrySet()) {
+            Map<PubSubNode, Object> updates = entry.getValue();
+            if (updates.isEmpty()) continue;
+            CompactState compactState = compactStates.get(entry.getKey());
+            PacketBuffer packet = compactState != null ? makeCompactUpdatePacket(compactState, updates) : makeUpdatePacket(updates);
+            if (packet != null) PacketSplitter.send(entry.getKey(), CHANNEL_NAME, packet);
+            updates.clear();
+        }
+    }
+
     /*
         Packet format (framed by PacketSplitter):
         id : varint = PACKET_S2C_UPDATE
@@ -100,33 +123,148 @@ public class PubSubMessenger implements PluginChannelHandler {
             String nodeName = update.getKey().fullName;
             Object value = update.getValue();
             buf.writeString(nodeName);
-            if (value instanceof NBTBase) {
+            int type = getType(value);
+            buf.writeVarInt(type);
+            writeValue(buf, type, value);
+        }
+        return buf;
+    }
+
+    /*
+        Compact packet format (framed by PacketSplitter), only sent after the client asked for FORMAT_COMPACT:
+        id : varint = PACKET_S2C_COMPACT_UPDATE
+        nodes : varint {  // nodes that got an id or changed type since the last packet
+            id : varint
+            node : string
+            type : varint
+        }[nodes]
+        size : varint {
+            id : varint
+            value : int and long as zigzag varint delta to the previous value of the node,
+                    float and double as varint of the bit-reversed XOR of their bits with the previous value's bits,
+                    others as in PACKET_S2C_UPDATE
+        }[size]
+        Values equal to the last one sent are left out. Announcing a node resets its previous value to 0 (all bits 0).
+        Reversing the XOR moves the low end of the mantissa, which doesn't change for round numbers like tps, to the top,
+        so those take few bytes. Noisy values like mspt can take a byte more than their raw bits.
+     */
+    private static PacketBuffer makeCompactUpdatePacket(CompactState state, Map<PubSubNode, Object> updates) {
+        Set<PubSubNode> announced = new LinkedHashSet<>();
+        List<PubSubNode> changed = new ArrayList<>(updates.size());
+        for (Map.Entry<PubSubNode, Object> update : updates.entrySet()) {
+            PubSubNode node = update.getKey();
+            Object value = update.getValue();
+            Object previous = state.lastValues.get(node);
+            if (previous != null && previous.equals(value)) continue;
+            int type = getType(value);
+            Integer knownType = state.types.get(node);
+            if (knownType == null || knownType != type) {
+                if (!state.ids.containsKey(node)) state.ids.put(node, state.ids.size());
+                state.types.put(node, type);
+                announced.add(node);
+            }
+            changed.add(node);
+        }
+        if (changed.isEmpty()) return null;
+
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer());
+        buf.writeVarInt(PACKET_S2C_COMPACT_UPDATE);
+        buf.writeVarInt(announced.size());
+        for (PubSubNode node : announced) {
+            buf.writeVarInt(state.ids.get(node));
+            buf.writeString(node.fullName);
+            buf.writeVarInt(state.types.get(node));
+        }
+        buf.writeVarInt(changed.size());
+        for (PubSubNode node : changed) {
+            Object value = updates.get(node);
+            Object previous = state.lastValues.get(node);
+            int type = state.types.get(node);
+            if (announced.contains(node)) previous = null;
+            buf.writeVarInt(state.ids.get(node));
+            if (type == TYPE_INT) {
+                int delta = (Integer) value - (previous instanceof Integer ? (Integer) previous : 0);
+                buf.writeVarInt((delta << 1) ^ (delta >> 31));
+            } else if (type == TYPE_LONG) {
+                long delta = (Long) value - (previous instanceof Long ? (Long) previous : 0L);
+                buf.writeVarLong((delta << 1) ^ (delta >> 63));
+            } else if (type == TYPE_FLOAT) {
+                int bits = Float.floatToRawIntBits((Float) value) ^ (previous instanceof Float ? Float.floatToRawIntBits((Float) previous) : 0);
+                buf.writeVarInt(Integer.reverse(bits));
+            } else if (type == TYPE_DOUBLE) {
+                long bits = Double.doubleToRawLongBits((Double) value) ^ (previous instanceof Double ? Double.doubleToRawLongBits((Double) previous) : 0L);
+                buf.writeVarLong(Long.reverse(bits));
+            } else {
+                writeValue(buf, type, value);
+            }
+            state.lastValues.put(node, value);
+        }
+        return buf;
+    }
+
+    private static int getType(Object value) {
+        if (value instanceof NBTBase) return TYPE_NBT;
+        if (value instanceof String) return TYPE_STRING;
+        if (value instanceof Integer) return TYPE_INT;
+        if (value instanceof Float) return TYPE_FLOAT;
+        if (value instanceof Long) return TYPE_LONG;
+        if (value instanceof Double) return TYPE_DOUBLE;
+        throw new IllegalArgumentException("Can't serialize " + value.getClass().getSimpleName());
+    }
+
+    private static void writeValue(PacketBuffer buf, int type, Object value) {
+        switch (type) {
+            case TYPE_NBT: {
                 NBTTagCompound tag = makeCompound((NBTBase) value);
-                buf.writeVarInt(TYPE_NBT);
                 ByteBufOutputStream out = new ByteBufOutputStream(buf);
                 try {
                     CompressedStreamTools.write(tag, out);
                 } catch (IOException ignored) {} // ByteBufOutputStream doesn't throw IOExceptions
-            } else if (value instanceof String) {
-                buf.writeVarInt(TYPE_STRING);
-                buf.writeString((String) value);
-            } else if (value instanceof Integer) {
-                buf.writeVarInt(TYPE_INT);
-                buf.writeInt((Integer) value);
-            } else if (value instanceof Float) {
-                buf.writeVarInt(TYPE_FLOAT);
-                buf.writeFloat((Float) value);
-            } else if (value instanceof Long) {
-                buf.writeVarInt(TYPE_LONG);
-                buf.writeLong((Long) value);
-            } else if (value instanceof Double) {
-                buf.writeVarInt(TYPE_DOUBLE);
-                buf.writeDouble((Double) value);
-            } else {
-                throw new IllegalArgumentException("Can't serialize " + update.getClass().getSimpleName());
+                return;
             }
+            case TYPE_STRING: buf.writeString((String) value); return;
+            case TYPE_INT: buf.writeInt((Integer) value); return;
+            case TYPE_FLOAT: buf.writeFloat((Float) value); return;
+            case TYPE_LONG: buf.writeLong((Long) value); return;
+            case TYPE_DOUBLE: buf.writeDouble((Double) value); return;
+        }
+    }
+
+    /*
+        Format negotiation (framed by PacketSplitter):
+        C2S id : varint = PACKET_C2S_SET_FORMAT, format : varint
+        S2C id : varint = PACKET_S2C_FORMAT, format : varint  // the format updates will use from now on
+        Clients that never ask keep getting FORMAT_LEGACY.
+     */
+    private void setFormat(EntityPlayerMP player, int format) {
+        if (format == FORMAT_COMPACT) {
+            // fresh ids and values, the client drops what it knew
+            compactStates.put(player, new CompactState());
+        } else {
+            format = FORMAT_LEGACY;
+            compactStates.remove(player);
+        }
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer());
+        buf.writeVarInt(PACKET_S2C_FORMAT);
+        buf.writeVarInt(format);
+        PacketSplitter.send(player, CHANNEL_NAME, buf);
+    }
+
+    /**
+     * Per player state of the compact format
+     */
+    private static class CompactState {
+        private final Map<PubSubNode, Integer> ids = new HashMap<>();
+        private final Map<PubSubNode, Integer> types = new HashMap<>();
+        private final Map<PubSubNode, Object> lastValues = new HashMap<>();
+
+        /**
+         * Keeps the ids but announces every node again with its next value
+         */
+        private void reset() {
+            types.clear();
+            lastValues.clear();
         }
-        return buf;
     }
 
     private static NBTTagCompound makeCompound(NBTBase tag) {
@@ -159,6 +297,10 @@ public class PubSubMessenger implements PluginChannelHandler {
                 unsubscribe(player, readNames(payload));
                 return;
             }
+            case PACKET_C2S_SET_FORMAT: {
+                setFormat(player, payload.readVarInt());
+                return;
+            }
         }
         throw new IllegalArgumentException("Unknown packet id " + id + " for channel " + CHANNEL_NAME);
     }
@@ -170,5 +312,7 @@ public class PubSubMessenger implements PluginChannelHandler {
             subscription.getKey().unsubscribe(subscription.getValue());
         }
         subscriptions.remove(player);
+        pendingUpdates.remove(player);
+        compactStates.remove(player);
     }
 }
@@ -12,6 +12,7 @@ public final class PubSubNode {
     public final String fullName;
 
     public final @Nullable PubSubNode parent;
+    private final PubSubManager manager;
     public final Map<String, PubSubNode> children = new HashMap<>();
     private Set<PubSubSubscriber> subscribers = new LinkedHashSet<>();
 
@@ -21,9 +22,10 @@ public final class PubSubNode {
      */
     private int totalSubscriberCount = 0;
 
-    @Nullable PubSubInfoProvider<?> provider;
+    private @Nullable PubSubInfoProvider<?> provider;
 
-    PubSubNode(@Nullable PubSubNode parent, String name) {
+    PubSubNode(PubSubManager manager, @Nullable PubSubNode parent, String name) {
+        this.manager = manager;
         this.parent = parent;
         this.name = name;
         this.fullName = parent != null && parent.fullName.length() > 0 ? parent.fullName + "." + name : name;
@@ -53,7 +55,7 @@ public final class PubSubNode {
         PubSubNode child = children.get(childName);
         if (child == null) {
             if (!create) return null;
-            child = new PubSubNode(this, childName);
+            child = new PubSubNode(manager, this, childName);
             children.put(childName, child);
         }
         return child.getChildNode(path, offset + 1, create);
@@ -68,7 +70,7 @@ public final class PubSubNode {
     void subscribe(PubSubSubscriber subscriber) {
         this.subscribers.add(subscriber);
         for (PubSubNode n = this.parent; n != null; n = n.parent) {
-            n.totalSubscriberCount++;
+            n.changeSubscriberCount(1);
         }
         this.onSubscribe(subscriber);
     }
@@ -79,7 +81,7 @@ public final class PubSubNode {
      * @param subscriber The subscriber being added
      */
     private void onSubscribe(PubSubSubscriber subscriber) {
-        this.totalSubscriberCount++;
+        this.changeSubscriberCount(1);
         if (this.provider != null) {
             subscriber.updateValue(this, this.provider.get());
         }
@@ -96,7 +98,7 @@ public final class PubSubNode {
     void unsubscribe(PubSubSubscriber subscriber) {
         this.subscribers.remove(subscriber);
         for (PubSubNode n = this.parent; n != null; n = n.parent) {
-            n.totalSubscriberCount--;
+            n.changeSubscriberCount(-1);
         }
         this.onUnsubscribe(subscriber);
     }
@@ -107,12 +109,37 @@ public final class PubSubNode {
      * @param subscriber The subscriber being removed
      */
     private void onUnsubscribe(PubSubSubscriber subscriber) {
-        this.totalSubscriberCount--;
+        this.changeSubscriberCount(-1);
         for (PubSubNode child : children.values()) {
             child.onUnsubscribe(subscriber);
         }
     }
 
+    /**
+     * Keeps the provider of this node in the manager's update schedule exactly while the branch has subscribers
+     */
+    private void changeSubscriberCount(int delta) {
+        boolean hadSubscribers = this.totalSubscriberCount > 0;
+        this.totalSubscriberCount += delta;
+        if (this.provider != null && hadSubscribers != this.totalSubscriberCount > 0) {
+            if (hadSubscribers) {
+                manager.unschedule(this.provider);
+            } else {
+                manager.schedule(this.provider);
+            }
+        }
+    }
+
+    void setProvider(PubSubInfoProvider<?> provider) {
+        if (this.provider != null && this.totalSubscriberCount > 0) {
+            manager.unschedule(this.provider);
+        }
+        this.provider = provider;
+        if (this.totalSubscriberCount > 0) {
+            manager.schedule(provider);
+        }
+    }
+
     /**
      * Publish new value
      * @param value New value for this node
@@ -134,21 +161,6 @@ public final class PubSubNode {
         if (parent != null) parent.publish(node, value);
     }
 
-    /**
-     * Instruct this node to update values from providers (called every tick).
-     * May already be suppressed by the parent if there are no subscribers.
-     * @param tickCounter Tick counter of the minecraft server
-     */
-    void update(int tickCounter) {
-        if (totalSubscriberCount == 0) return;
-        if (this.provider != null && this.provider.shouldUpdate(tickCounter)) {
-            this.publish(this.provider.get());
-        }
-        for (PubSubNode child : children.values()) {
-            child.update(tickCounter);
-        }
-    }
-
     @Override
     public int hashCode() {
         return Objects.hashCode(this.parent) * 31 + this.name.hashCode();
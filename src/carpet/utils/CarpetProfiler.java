@@ -1,63 +1,190 @@
 package carpet.utils;
 
+import carpet.CarpetServer;
 import carpet.CarpetSettings;
+import carpet.carpetclient.CarpetClientMessageHandler;
+import carpet.helpers.ChunkSendQueue;
+import carpet.helpers.LightingEngine;
+import carpet.pubsub.PubSubInfoProvider;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import net.minecraft.command.ICommandSender;
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.tileentity.TileEntity;
-
-import java.util.Comparator;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.DimensionType;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.storage.RegionFileCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public class CarpetProfiler
 {
-    private static final HashMap<String, Long> time_repo = new HashMap<String, Long>();
+    // Sections are pre-registered so that the tick loop never builds keys or boxes values,
+    // every measurement lands in a primitive slot indexed by (dimension, section)
+    public static final int SECTION_NETWORK = 0;
+    public static final int SECTION_AUTOSAVE = 1;
+    public static final int SECTION_SPAWNING = 2;
+    public static final int SECTION_BLOCKS = 3;
+    public static final int SECTION_ENTITIES = 4;
+    public static final int SECTION_TILEENTITIES = 5;
+    private static final int SECTION_COUNT = 6;
+    private static final DimensionType[] DIMENSIONS = DimensionType.values();
+
+    // slots [0, SECTION_COUNT) hold the global sections, each dimension gets the following SECTION_COUNT slots
+    private static final long[] section_times = new long[SECTION_COUNT * (DIMENSIONS.length + 1)];
+    private static long tick_time = 0L;
+
+    // entity and tile entity classes are interned to an id on first sight, counters are indexed [dimension][id]
+    private static final IdentityHashMap<Class<?>, Integer> class_ids = new IdentityHashMap<>();
+    private static final HashMap<String, Integer> name_ids = new HashMap<>();
+    private static final List<String> class_names = new ArrayList<>();
+    private static long[][] class_times = new long[DIMENSIONS.length][16];
+    private static long[][] class_counts = new long[DIMENSIONS.length][16];
+
+    // chunk attribution report, time is bucketed by chunk position per dimension and kind of work
+    public static final int ATTRIBUTION_ENTITIES = 0;
+    public static final int ATTRIBUTION_TILEENTITIES = 1;
+    public static final int ATTRIBUTION_BLOCKEVENTS = 2;
+    public static final int ATTRIBUTION_TILETICKS = 3;
+    private static final int ATTRIBUTION_COUNT = 4;
+    private static final int CHUNK_EXPORT_LIMIT = 1024;
+    private static final Long2LongOpenHashMap[][] chunk_times = new Long2LongOpenHashMap[DIMENSIONS.length][ATTRIBUTION_COUNT];
+    private static long current_chunk = 0L;
+
+    // always-on rolling histograms, recorded while the rollingProfiler rule is enabled
+    private static final int ROLLING_SLICE_TICKS = 200;
+    private static final int ROLLING_SLICES = 30; // 5 minutes at 20 tps
+    private static final TickHistogram tick_histogram = new TickHistogram(ROLLING_SLICES);
+    private static final TickHistogram[] section_histograms = new TickHistogram[section_times.length];
+    // sections can run several times a tick, e.g. blocks for tile ticks and random ticks, their time is summed
+    // and recorded once per tick, only for the sections that ran
+    private static final long[] rolling_section_times = new long[section_times.length];
+    private static final boolean[] rolling_section_ran = new boolean[section_times.length];
+    private static int rolling_section = -1;
+    private static long rolling_section_start = 0L;
+    private static long rolling_tick_start = 0L;
+    private static int rolling_ticks = 0;
+
+    static {
+        for (int d = 0; d < DIMENSIONS.length; d++)
+        {
+            for (int kind = 0; kind < ATTRIBUTION_COUNT; kind++)
+            {
+                chunk_times[d][kind] = new Long2LongOpenHashMap();
+            }
+        }
+        for (int slot = 0; slot < section_histograms.length; slot++)
+        {
+            section_histograms[slot] = new TickHistogram(ROLLING_SLICES);
+        }
+        register_histogram_nodes("tick", tick_histogram);
+        register_histogram_nodes("network", section_histograms[SECTION_NETWORK]);
+        register_histogram_nodes("autosave", section_histograms[SECTION_AUTOSAVE]);
+        for (DimensionType dimension : DIMENSIONS)
+        {
+            for (int section = SECTION_SPAWNING; section < SECTION_COUNT; section++)
+            {
+                register_histogram_nodes(dimension.getName() + "." + section_name(section), section_histograms[section_slot(dimension, section)]);
+            }
+        }
+    }
+
     public static int tick_health_requested = 0;
     private static int tick_health_elapsed = 0;
-    private static int test_type = 0; //1 for ticks, 2 for entities;
-    private static String current_section = null;
+    private static int test_type = 0; //1 for ticks, 2 for entities, 3 for chunks;
+    private static int current_section = -1;
+    private static int current_dimension = -1;
     private static long current_section_start = 0;
     private static long current_tick_start = 0;
 
     public static void prepare_tick_report(int ticks)
     {
         //maybe add so it only spams the sending player, but honestly - all may want to see it
-        time_repo.clear();
+        clear_counters();
         test_type = 1;
-        time_repo.put("tick",0L);
-        time_repo.put("Network",0L);
-        time_repo.put("Autosave",0L);
-
-        time_repo.put("overworld.spawning",0L);
-        time_repo.put("overworld.blocks",0L);
-        time_repo.put("overworld.entities",0L);
-        time_repo.put("overworld.tileentities",0L);
-
-        time_repo.put("the_nether.spawning",0L);
-        time_repo.put("the_nether.blocks",0L);
-        time_repo.put("the_nether.entities",0L);
-        time_repo.put("the_nether.tileentities",0L);
-
-        time_repo.put("the_end.spawning",0L);
-        time_repo.put("the_end.blocks",0L);
-        time_repo.put("the_end.entities",0L);
-        time_repo.put("the_end.tileentities",0L);
-        //spawning
-        //blocks
-        //entities
-        //tileentities
-
         tick_health_elapsed = ticks;
         tick_health_requested = ticks;
         current_tick_start = 0L;
         current_section_start = 0L;
-        current_section = null;
+        current_section = -1;
+        current_dimension = -1;
+    }
 
+    private static int section_slot(DimensionType dimension, int section)
+    {
+        if (dimension == null)
+        {
+            return section;
+        }
+        return (dimension.ordinal() + 1) * SECTION_COUNT + section;
     }
 
-    public static void start_section(String dimension, String name)
+    private static int class_id(Class<?> clazz, String name)
     {
+        Integer id = class_ids.get(clazz);
+        if (id == null)
+        {
+            id = name_ids.get(name);
+            if (id == null)
+            {
+                id = class_names.size();
+                class_names.add(name);
+                name_ids.put(name, id);
+                if (id >= class_times[0].length)
+                {
+                    int capacity = class_times[0].length * 2;
+                    for (int d = 0; d < DIMENSIONS.length; d++)
+                    {
+                        class_times[d] = Arrays.copyOf(class_times[d], capacity);
+                        class_counts[d] = Arrays.copyOf(class_counts[d], capacity);
+                    }
+                }
+            }
+            class_ids.put(clazz, id);
+        }
+        return id;
+    }
+
+    private static String section_name(int section)
+    {
+        switch (section)
+        {
+            case SECTION_NETWORK: return "network";
+            case SECTION_AUTOSAVE: return "autosave";
+            case SECTION_SPAWNING: return "spawning";
+            case SECTION_BLOCKS: return "blocks";
+            case SECTION_ENTITIES: return "entities";
+            case SECTION_TILEENTITIES: return "tileentities";
+        }
+        return "unknown";
+    }
+
+    private static void register_histogram_nodes(String key, TickHistogram histogram)
+    {
+        String prefix = "minecraft.performance.histogram." + key;
+        new PubSubInfoProvider<>(CarpetServer.PUBSUB, prefix + ".p50", 20, () -> histogram.percentile(50) / 1000000.0D);
+        new PubSubInfoProvider<>(CarpetServer.PUBSUB, prefix + ".p99", 20, () -> histogram.percentile(99) / 1000000.0D);
+        new PubSubInfoProvider<>(CarpetServer.PUBSUB, prefix + ".p999", 20, () -> histogram.percentile(99.9) / 1000000.0D);
+        new PubSubInfoProvider<>(CarpetServer.PUBSUB, prefix + ".max", 20, () -> histogram.max() / 1000000.0D);
+    }
+
+    public static void start_section(DimensionType dimension, int section)
+    {
+        if (CarpetSettings.rollingProfiler)
+        {
+            start_rolling_section(section_slot(dimension, section));
+        }
         if (tick_health_requested == 0L || test_type != 1)
         {
             return;
@@ -66,22 +193,17 @@ public class CarpetProfiler
         {
             return;
         }
-        if (current_section != null)
+        if (current_section != -1)
         {
             end_current_section();
         }
-        String key = name;
-        if (dimension != null)
-        {
-            key = dimension+"."+name;
-        }
-        current_section = key;
+        current_section = section_slot(dimension, section);
         current_section_start = System.nanoTime();
     }
 
-    public static void start_entity_section(String dimension, Entity e)
+    public static void start_entity_section(DimensionType dimension, Entity e)
     {
-        if (tick_health_requested == 0L || test_type != 2)
+        if (tick_health_requested == 0L || test_type < 2)
         {
             return;
         }
@@ -89,17 +211,26 @@ public class CarpetProfiler
         {
             return;
         }
-        if (current_section != null)
+        if (current_section != -1)
         {
             end_current_section();
         }
-        current_section = dimension+"."+e.cm_name();
+        current_dimension = dimension.ordinal();
+        if (test_type == 2)
+        {
+            current_section = class_id(e.getClass(), e.cm_name());
+        }
+        else
+        {
+            current_section = ATTRIBUTION_ENTITIES;
+            current_chunk = ChunkPos.asLong(e.chunkCoordX, e.chunkCoordZ);
+        }
         current_section_start = System.nanoTime();
     }
 
-    public static void start_tileentity_section(String dimension, TileEntity e)
+    public static void start_tileentity_section(DimensionType dimension, TileEntity e)
     {
-        if (tick_health_requested == 0L || test_type != 2)
+        if (tick_health_requested == 0L || test_type < 2)
         {
             return;
         }
@@ -107,16 +238,48 @@ public class CarpetProfiler
         {
             return;
         }
-        if (current_section != null)
+        if (current_section != -1)
         {
             end_current_section();
         }
-        current_section = dimension+"."+e.cm_name();
+        current_dimension = dimension.ordinal();
+        if (test_type == 2)
+        {
+            current_section = class_id(e.getClass(), e.cm_name());
+        }
+        else
+        {
+            current_section = ATTRIBUTION_TILEENTITIES;
+            current_chunk = ChunkPos.asLong(e.getPos().getX() >> 4, e.getPos().getZ() >> 4);
+        }
+        current_section_start = System.nanoTime();
+    }
+
+    /**
+     * Attributes block events and tile ticks to their chunk, only active during a chunk report
+     */
+    public static void start_block_section(DimensionType dimension, BlockPos pos, int kind)
+    {
+        if (tick_health_requested == 0L || test_type != 3)
+        {
+            return;
+        }
+        if (current_tick_start == 0L)
+        {
+            return;
+        }
+        current_dimension = dimension.ordinal();
+        current_section = kind;
+        current_chunk = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
         current_section_start = System.nanoTime();
     }
 
     public static void end_current_section()
     {
+        if (CarpetSettings.rollingProfiler)
+        {
+            end_rolling_section();
+        }
         if (tick_health_requested == 0L || test_type != 1)
         {
             return;
@@ -126,20 +289,19 @@ public class CarpetProfiler
         {
             return;
         }
-        if (current_section == null)
+        if (current_section == -1)
         {
             CarpetSettings.LOG.error("finishing section that hasn't started");
             return;
         }
-        //CarpetSettings.LOG.error("finishing section "+current_section);
-        time_repo.put(current_section,time_repo.get(current_section)+end_time-current_section_start);
-        current_section = null;
+        section_times[current_section] += end_time - current_section_start;
+        current_section = -1;
         current_section_start = 0;
     }
 
     public static void end_current_entity_section()
     {
-        if (tick_health_requested == 0L || test_type != 2)
+        if (tick_health_requested == 0L || test_type < 2)
         {
             return;
         }
@@ -148,20 +310,211 @@ public class CarpetProfiler
         {
             return;
         }
-        if (current_section == null)
+        if (current_section == -1)
         {
             CarpetSettings.LOG.error("finishing section that hasn't started");
             return;
         }
-        //CarpetSettings.LOG.error("finishing section "+current_section);
-        String time_section = "t."+current_section;
-        String count_section = "c."+current_section;
-        time_repo.put(time_section,time_repo.getOrDefault(time_section,0L)+end_time-current_section_start);
-        time_repo.put(count_section,time_repo.getOrDefault(count_section,0L)+1);
-        current_section = null;
+        if (test_type == 2)
+        {
+            class_times[current_dimension][current_section] += end_time - current_section_start;
+            class_counts[current_dimension][current_section]++;
+        }
+        else
+        {
+            chunk_times[current_dimension][current_section].addTo(current_chunk, end_time - current_section_start);
+        }
+        current_section = -1;
+        current_dimension = -1;
         current_section_start = 0;
     }
 
+    public static void end_block_section()
+    {
+        if (test_type != 3)
+        {
+            return;
+        }
+        end_current_entity_section();
+    }
+
+    private static void start_rolling_section(int slot)
+    {
+        if (rolling_tick_start == 0L)
+        {
+            return;
+        }
+        if (rolling_section != -1)
+        {
+            end_rolling_section();
+        }
+        rolling_section = slot;
+        rolling_section_start = System.nanoTime();
+    }
+
+    private static void end_rolling_section()
+    {
+        if (rolling_section == -1)
+        {
+            return;
+        }
+        rolling_section_times[rolling_section] += System.nanoTime() - rolling_section_start;
+        rolling_section_ran[rolling_section] = true;
+        rolling_section = -1;
+        rolling_section_start = 0L;
+    }
+
+    public static void start_rolling_tick()
+    {
+        rolling_tick_start = System.nanoTime();
+        rolling_section = -1;
+        Arrays.fill(rolling_section_times, 0L);
+        Arrays.fill(rolling_section_ran, false);
+    }
+
+    public static void end_rolling_tick()
+    {
+        if (rolling_tick_start == 0L)
+        {
+            return;
+        }
+        end_rolling_section();
+        tick_histogram.record(System.nanoTime() - rolling_tick_start);
+        rolling_tick_start = 0L;
+        for (int slot = 0; slot < rolling_section_times.length; slot++)
+        {
+            if (rolling_section_ran[slot])
+            {
+                section_histograms[slot].record(rolling_section_times[slot]);
+                rolling_section_times[slot] = 0L;
+                rolling_section_ran[slot] = false;
+            }
+        }
+        if (++rolling_ticks % ROLLING_SLICE_TICKS == 0)
+        {
+            tick_histogram.advance();
+            for (TickHistogram histogram : section_histograms)
+            {
+                histogram.advance();
+            }
+        }
+    }
+
+    public static void clear_rolling_histograms()
+    {
+        tick_histogram.clear();
+        for (TickHistogram histogram : section_histograms)
+        {
+            histogram.clear();
+        }
+        rolling_ticks = 0;
+    }
+
+    public static TickHistogram get_tick_histogram()
+    {
+        return tick_histogram;
+    }
+
+    public static TickHistogram get_section_histogram(DimensionType dimension, int section)
+    {
+        return section_histograms[section_slot(dimension, section)];
+    }
+
+    public static void print_rolling_report(ICommandSender sender)
+    {
+        if (!CarpetSettings.rollingProfiler)
+        {
+            Messenger.m(sender, "r rollingProfiler is disabled, enable it with /carpet rollingProfiler true");
+            return;
+        }
+        Messenger.m(sender, String.format("w Rolling profile over the last %d ticks (p50 / p99 / p99.9 / max):", tick_histogram.count()));
+        print_histogram_line(sender, "Tick", tick_histogram);
+        print_histogram_line(sender, "Autosave", section_histograms[SECTION_AUTOSAVE]);
+        print_histogram_line(sender, "Network", section_histograms[SECTION_NETWORK]);
+        for (DimensionType dimension : DIMENSIONS)
+        {
+            Messenger.m(sender, "w " + dimension.getName() + ":");
+            print_histogram_line(sender, " - Entities", get_section_histogram(dimension, SECTION_ENTITIES));
+            print_histogram_line(sender, " - Tile Entities", get_section_histogram(dimension, SECTION_TILEENTITIES));
+            print_histogram_line(sender, " - Blocks", get_section_histogram(dimension, SECTION_BLOCKS));
+            print_histogram_line(sender, " - Spawning", get_section_histogram(dimension, SECTION_SPAWNING));
+        }
+    }
+
+    private static void print_histogram_line(ICommandSender sender, String name, TickHistogram histogram)
+    {
+        Messenger.m(sender, String.format("w %s: %.3fms / %.3fms / %.3fms / %.3fms", name,
+                histogram.percentile(50) / 1000000.0D,
+                histogram.percentile(99) / 1000000.0D,
+                histogram.percentile(99.9) / 1000000.0D,
+                histogram.max() / 1000000.0D));
+    }
+
+    /**
+     * Prints the light update counters of every dimension since the previous report
+     */
+    public static void print_lighting_report(MinecraftServer server, ICommandSender sender)
+    {
+        if (!CarpetSettings.newLight)
+        {
+            Messenger.m(sender, "r Light update counters need newLight");
+            return;
+        }
+        Messenger.m(sender, "w Light updates since the last report:");
+        for (WorldServer world : server.worlds)
+        {
+            LightingEngine engine = world.lightingEngine;
+            Messenger.m(sender, String.format("w %s: %d queued, %d deduplicated, %d processed in %d sweeps, %d early flushes skipped",
+                    world.provider.getDimensionType().getName(), engine.getQueuedCount(), engine.getDeduplicatedCount(),
+                    engine.getProcessedCount(), engine.getSweepCount(), engine.getSkippedFlushCount()));
+            engine.resetCounters();
+        }
+    }
+
+    public static void print_chunk_send_report(MinecraftServer server, ICommandSender sender)
+    {
+        Messenger.m(sender, String.format("w Chunks since the last report: %d loaded, %d sent, %.1fKB, latency %.1fms avg %.1fms max",
+                ChunkSendQueue.getChunksLoaded(), ChunkSendQueue.getChunksSent(), ChunkSendQueue.getBytesSent() / 1024.0D,
+                ChunkSendQueue.getAverageLatencyMillis(), ChunkSendQueue.getMaxLatencyMillis()));
+        ChunkSendQueue.resetStats();
+        for (WorldServer world : server.worlds)
+        {
+            Map<EntityPlayerMP, Integer> queued = world.getPlayerChunkMap().getQueuedChunkCounts();
+            if (queued.isEmpty()) continue;
+            Messenger.m(sender, "w Queued in " + world.provider.getDimensionType().getName() + ":");
+            for (Map.Entry<EntityPlayerMP, Integer> entry : queued.entrySet())
+            {
+                if (entry.getKey() == null) continue;
+                Messenger.m(sender, String.format("w  - %s: %d chunks", entry.getKey().getName(), entry.getValue()));
+            }
+        }
+    }
+
+    public static void print_region_cache_report(ICommandSender sender)
+    {
+        List<RegionFileCache.Stats> stats = RegionFileCache.getStats();
+        long hits = 0L, misses = 0L, opens = 0L, closes = 0L;
+        for (RegionFileCache.Stats region : stats)
+        {
+            hits += region.hits.get();
+            misses += region.misses.get();
+            opens += region.opens.get();
+            closes += region.closes.get();
+        }
+        Messenger.m(sender, String.format("w Region files open: %d / %d", RegionFileCache.getOpenCount(), CarpetSettings.regionFileCacheSize));
+        Messenger.m(sender, String.format("w Lookups: %d hits, %d misses (%.1f%% hit rate)", hits, misses, hits + misses == 0L ? 0.0D : 100.0D * hits / (hits + misses)));
+        Messenger.m(sender, String.format("w Files opened: %d, closed: %d", opens, closes));
+        stats.sort((a, b) -> Long.compare(b.opens.get(), a.opens.get()));
+        Messenger.m(sender, "w Most reopened regions:");
+        for (int i = 0; i < Math.min(10, stats.size()) && stats.get(i).opens.get() > 1L; i++)
+        {
+            RegionFileCache.Stats region = stats.get(i);
+            Messenger.m(sender, String.format("w  - %s/%s: %d opens, %d hits, %d misses",
+                    region.file.getParentFile().getParentFile().getName(), region.file.getName(),
+                    region.opens.get(), region.hits.get(), region.misses.get()));
+        }
+    }
+
     public static void start_tick_profiling()
     {
         current_tick_start = System.nanoTime();
@@ -173,9 +526,8 @@ public class CarpetProfiler
         {
             return;
         }
-        time_repo.put("tick",time_repo.get("tick")+System.nanoTime()-current_tick_start);
+        tick_time += System.nanoTime() - current_tick_start;
         tick_health_elapsed --;
-        //CarpetSettings.LOG.error("tick count current at "+time_repo.get("tick"));
         if (tick_health_elapsed <= 0)
         {
             finalize_tick_report(server);
@@ -192,77 +544,79 @@ public class CarpetProfiler
         {
             finalize_tick_report_for_entities(server);
         }
+        if (test_type == 3)
+        {
+            finalize_tick_report_for_chunks(server);
+        }
         cleanup_tick_report();
     }
 
     public static void cleanup_tick_report()
     {
-        time_repo.clear();
-        time_repo.put("tick",0L);
+        clear_counters();
         test_type = 0;
         tick_health_elapsed = 0;
         tick_health_requested = 0;
         current_tick_start = 0L;
         current_section_start = 0L;
-        current_section = null;
+        current_section = -1;
+        current_dimension = -1;
+    }
 
+    private static void clear_counters()
+    {
+        tick_time = 0L;
+        Arrays.fill(section_times, 0L);
+        for (int d = 0; d < DIMENSIONS.length; d++)
+        {
+            Arrays.fill(class_times[d], 0L);
+            Arrays.fill(class_counts[d], 0L);
+            for (int kind = 0; kind < ATTRIBUTION_COUNT; kind++)
+            {
+                chunk_times[d][kind].clear();
+            }
+        }
     }
 
     public static void finalize_tick_report_for_time(MinecraftServer server)
     {
         //print stats
-        long total_tick_time = time_repo.get("tick");
+        long total_tick_time = tick_time;
         double divider = 1.0D/tick_health_requested/1000000;
         Messenger.print_server_message(server, String.format("Average tick time: %.3fms",divider*total_tick_time));
         long accumulated = 0L;
 
-        accumulated += time_repo.get("Autosave");
-        Messenger.print_server_message(server, String.format("Autosave: %.3fms",divider*time_repo.get("Autosave")));
-
-        accumulated += time_repo.get("Network");
-        Messenger.print_server_message(server, String.format("Network: %.3fms",divider*time_repo.get("Network")));
-
-        Messenger.print_server_message(server, "Overworld:");
-
-        accumulated += time_repo.get("overworld.entities");
-        Messenger.print_server_message(server, String.format(" - Entities: %.3fms",divider*time_repo.get("overworld.entities")));
-
-        accumulated += time_repo.get("overworld.tileentities");
-        Messenger.print_server_message(server, String.format(" - Tile Entities: %.3fms",divider*time_repo.get("overworld.tileentities")));
+        accumulated += section_times[SECTION_AUTOSAVE];
+        Messenger.print_server_message(server, String.format("Autosave: %.3fms",divider*section_times[SECTION_AUTOSAVE]));
 
-        accumulated += time_repo.get("overworld.blocks");
-        Messenger.print_server_message(server, String.format(" - Blocks: %.3fms",divider*time_repo.get("overworld.blocks")));
+        accumulated += section_times[SECTION_NETWORK];
+        Messenger.print_server_message(server, String.format("Network: %.3fms",divider*section_times[SECTION_NETWORK]));
 
-        accumulated += time_repo.get("overworld.spawning");
-        Messenger.print_server_message(server, String.format(" - Spawning: %.3fms",divider*time_repo.get("overworld.spawning")));
-
-        Messenger.print_server_message(server, "Nether:");
-
-        accumulated += time_repo.get("the_nether.entities");
-        Messenger.print_server_message(server, String.format(" - Entities: %.3fms",divider*time_repo.get("the_nether.entities")));
-
-        accumulated += time_repo.get("the_nether.tileentities");
-        Messenger.print_server_message(server, String.format(" - Tile Entities: %.3fms",divider*time_repo.get("the_nether.tileentities")));
-
-        accumulated += time_repo.get("the_nether.blocks");
-        Messenger.print_server_message(server, String.format(" - Blocks: %.3fms",divider*time_repo.get("the_nether.blocks")));
-
-        accumulated += time_repo.get("the_nether.spawning");
-        Messenger.print_server_message(server, String.format(" - Spawning: %.3fms",divider*time_repo.get("the_nether.spawning")));
-
-        Messenger.print_server_message(server, "End:");
+        for (DimensionType dimension : new DimensionType[]{DimensionType.OVERWORLD, DimensionType.NETHER, DimensionType.THE_END})
+        {
+            switch (dimension)
+            {
+                case OVERWORLD: Messenger.print_server_message(server, "Overworld:"); break;
+                case NETHER: Messenger.print_server_message(server, "Nether:"); break;
+                case THE_END: Messenger.print_server_message(server, "End:"); break;
+            }
 
-        accumulated += time_repo.get("the_end.entities");
-        Messenger.print_server_message(server, String.format(" - Entities: %.3fms",divider*time_repo.get("the_end.entities")));
+            long entities = section_times[section_slot(dimension, SECTION_ENTITIES)];
+            accumulated += entities;
+            Messenger.print_server_message(server, String.format(" - Entities: %.3fms",divider*entities));
 
-        accumulated += time_repo.get("the_end.tileentities");
-        Messenger.print_server_message(server, String.format(" - Tile Entities: %.3fms",divider*time_repo.get("the_end.tileentities")));
+            long tileentities = section_times[section_slot(dimension, SECTION_TILEENTITIES)];
+            accumulated += tileentities;
+            Messenger.print_server_message(server, String.format(" - Tile Entities: %.3fms",divider*tileentities));
 
-        accumulated += time_repo.get("the_end.blocks");
-        Messenger.print_server_message(server, String.format(" - Blocks: %.3fms",divider*time_repo.get("the_end.blocks")));
+            long blocks = section_times[section_slot(dimension, SECTION_BLOCKS)];
+            accumulated += blocks;
+            Messenger.print_server_message(server, String.format(" - Blocks: %.3fms",divider*blocks));
 
-        accumulated += time_repo.get("the_end.spawning");
-        Messenger.print_server_message(server, String.format(" - Spawning: %.3fms",divider*time_repo.get("the_end.spawning")));
+            long spawning = section_times[section_slot(dimension, SECTION_SPAWNING)];
+            accumulated += spawning;
+            Messenger.print_server_message(server, String.format(" - Spawning: %.3fms",divider*spawning));
+        }
 
         long rest = total_tick_time-accumulated;
 
@@ -272,60 +626,149 @@ public class CarpetProfiler
     public static void finalize_tick_report_for_entities(MinecraftServer server)
     {
         //print stats
-        long total_tick_time = time_repo.get("tick");
+        long total_tick_time = tick_time;
         double divider = 1.0D/tick_health_requested/1000000;
         Messenger.print_server_message(server, String.format("Average tick time: %.3fms",divider*total_tick_time));
-        time_repo.remove("tick");
         Messenger.print_server_message(server, "Top 10 counts:");
-        int total = 0;
-        for ( Map.Entry<String, Long> entry : time_repo.entrySet().stream().sorted(Map.Entry.comparingByValue(Comparator.reverseOrder())).collect(Collectors.toList()) )
+        for (int slot : top_slots(class_counts, 10))
         {
-            if (entry.getKey().startsWith("t."))
-            {
-                continue;
-            }
-            total++;
-            if (total > 10)
+            int dim = slot / class_names.size();
+            int id = slot % class_names.size();
+            Messenger.print_server_message(server, String.format(" - %s in %s: %.3f",class_names.get(id), DIMENSIONS[dim].getName(), 1.0D*class_counts[dim][id]/tick_health_requested));
+        }
+        Messenger.print_server_message(server, "Top 10 grossing:");
+        for (int slot : top_slots(class_times, 10))
+        {
+            int dim = slot / class_names.size();
+            int id = slot % class_names.size();
+            Messenger.print_server_message(server, String.format(" - %s in %s: %.3fms",class_names.get(id), DIMENSIONS[dim].getName(), divider*class_times[dim][id]));
+        }
+    }
+
+    /**
+     * Returns up to limit (dimension, class) slots encoded as dim*classes+id with the highest non-zero values,
+     * only used when printing the report so it is free to allocate
+     */
+    private static List<Integer> top_slots(long[][] values, int limit)
+    {
+        int classes = class_names.size();
+        List<Integer> slots = new ArrayList<>();
+        for (int d = 0; d < DIMENSIONS.length; d++)
+        {
+            for (int id = 0; id < classes; id++)
             {
-                continue;
+                if (values[d][id] > 0L)
+                {
+                    slots.add(d * classes + id);
+                }
             }
-            String[] parts = entry.getKey().split("\\.");
-            String dim = parts[1];
-            String name = parts[2];
-            Messenger.print_server_message(server, String.format(" - %s in %s: %.3f",name, dim, 1.0D*entry.getValue()/tick_health_requested));
         }
-        Messenger.print_server_message(server, "Top 10 grossing:");
-        total = 0;
-        for ( Map.Entry<String, Long> entry : time_repo.entrySet().stream().sorted(Map.Entry.comparingByValue(Comparator.reverseOrder())).collect(Collectors.toList()) )
+        slots.sort((a, b) -> Long.compare(values[b / classes][b % classes], values[a / classes][a % classes]));
+        return slots.subList(0, Math.min(limit, slots.size()));
+    }
+
+    public static void finalize_tick_report_for_chunks(MinecraftServer server)
+    {
+        long total_tick_time = tick_time;
+        double divider = 1.0D/tick_health_requested/1000000;
+        Messenger.print_server_message(server, String.format("Average tick time: %.3fms",divider*total_tick_time));
+        NBTTagCompound export = new NBTTagCompound();
+        for (int d = 0; d < DIMENSIONS.length; d++)
         {
-            if (entry.getKey().startsWith("c."))
+            Long2LongOpenHashMap chunks = new Long2LongOpenHashMap();
+            Long2LongOpenHashMap regions = new Long2LongOpenHashMap();
+            for (int kind = 0; kind < ATTRIBUTION_COUNT; kind++)
             {
-                continue;
+                for (Long2LongMap.Entry entry : chunk_times[d][kind].long2LongEntrySet())
+                {
+                    long chunk = entry.getLongKey();
+                    chunks.addTo(chunk, entry.getLongValue());
+                    regions.addTo(ChunkPos.asLong(chunk_x(chunk) >> 5, chunk_z(chunk) >> 5), entry.getLongValue());
+                }
             }
-            total++;
-            if (total > 10)
+            if (chunks.isEmpty())
             {
                 continue;
             }
-            String[] parts = entry.getKey().split("\\.");
-            String dim = parts[1];
-            String name = parts[2];
-            Messenger.print_server_message(server, String.format(" - %s in %s: %.3fms",name, dim, divider*entry.getValue()));
+            String dim = DIMENSIONS[d].getName();
+            List<Long2LongMap.Entry> hot_chunks = sorted_entries(chunks);
+            Messenger.print_server_message(server, String.format("Top 10 chunks in %s:", dim));
+            for (Long2LongMap.Entry entry : hot_chunks.subList(0, Math.min(10, hot_chunks.size())))
+            {
+                long chunk = entry.getLongKey();
+                Messenger.print_server_message(server, String.format(" - [%d, %d] (%d, %d): %.3fms (e: %.3f te: %.3f be: %.3f tt: %.3f)",
+                        chunk_x(chunk), chunk_z(chunk), chunk_x(chunk) * 16 + 8, chunk_z(chunk) * 16 + 8, divider*entry.getLongValue(),
+                        divider*chunk_times[d][ATTRIBUTION_ENTITIES].get(chunk),
+                        divider*chunk_times[d][ATTRIBUTION_TILEENTITIES].get(chunk),
+                        divider*chunk_times[d][ATTRIBUTION_BLOCKEVENTS].get(chunk),
+                        divider*chunk_times[d][ATTRIBUTION_TILETICKS].get(chunk)));
+            }
+            List<Long2LongMap.Entry> hot_regions = sorted_entries(regions);
+            Messenger.print_server_message(server, String.format("Top 5 regions in %s:", dim));
+            for (Long2LongMap.Entry entry : hot_regions.subList(0, Math.min(5, hot_regions.size())))
+            {
+                long region = entry.getLongKey();
+                Messenger.print_server_message(server, String.format(" - r.%d.%d: %.3fms", chunk_x(region), chunk_z(region), divider*entry.getLongValue()));
+            }
+
+            NBTTagList list = new NBTTagList();
+            for (Long2LongMap.Entry entry : hot_chunks.subList(0, Math.min(CHUNK_EXPORT_LIMIT, hot_chunks.size())))
+            {
+                long chunk = entry.getLongKey();
+                NBTTagCompound chunkData = new NBTTagCompound();
+                chunkData.setInteger("x", chunk_x(chunk));
+                chunkData.setInteger("z", chunk_z(chunk));
+                chunkData.setFloat("total", (float) (divider*entry.getLongValue()));
+                chunkData.setFloat("entities", (float) (divider*chunk_times[d][ATTRIBUTION_ENTITIES].get(chunk)));
+                chunkData.setFloat("tileentities", (float) (divider*chunk_times[d][ATTRIBUTION_TILEENTITIES].get(chunk)));
+                chunkData.setFloat("blockevents", (float) (divider*chunk_times[d][ATTRIBUTION_BLOCKEVENTS].get(chunk)));
+                chunkData.setFloat("tileticks", (float) (divider*chunk_times[d][ATTRIBUTION_TILETICKS].get(chunk)));
+                list.appendTag(chunkData);
+            }
+            export.setTag(dim, list);
         }
+        CarpetClientMessageHandler.sendNBTChunkProfileData(export);
+    }
+
+    private static int chunk_x(long chunk)
+    {
+        return (int) chunk;
+    }
 
+    private static int chunk_z(long chunk)
+    {
+        return (int) (chunk >> 32);
+    }
+
+    private static List<Long2LongMap.Entry> sorted_entries(Long2LongOpenHashMap map)
+    {
+        List<Long2LongMap.Entry> entries = new ArrayList<>(map.long2LongEntrySet());
+        entries.sort((a, b) -> Long.compare(b.getLongValue(), a.getLongValue()));
+        return entries;
+    }
+
+    public static void prepare_chunk_report(int ticks)
+    {
+        clear_counters();
+        test_type = 3;
+        tick_health_elapsed = ticks;
+        tick_health_requested = ticks;
+        current_tick_start = 0L;
+        current_section_start = 0L;
+        current_section = -1;
+        current_dimension = -1;
     }
 
     public static void prepare_entity_report(int ticks)
     {
         //maybe add so it only spams the sending player, but honestly - all may want to see it
-        time_repo.clear();
-        time_repo.put("tick",0L);
+        clear_counters();
         test_type = 2;
         tick_health_elapsed = ticks;
         tick_health_requested = ticks;
         current_tick_start = 0L;
         current_section_start = 0L;
-        current_section = null;
-
+        current_section = -1;
+        current_dimension = -1;
     }
 }
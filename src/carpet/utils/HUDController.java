@@ -1,7 +1,13 @@
 package carpet.utils;
 
+import carpet.CarpetSettings;
+import carpet.helpers.ChunkPacketCache;
+import carpet.helpers.ChunkSavePipeline;
 import carpet.helpers.HopperCounter;
+import carpet.helpers.PacketCompression;
 import carpet.helpers.TickSpeed;
+import carpet.helpers.TileEntityOptimizer;
+import carpet.helpers.TileEntityOptimizer.ILazyTileEntity;
 import carpet.logging.LoggerRegistry;
 import carpet.logging.logHelpers.PacketCounter;
 import net.minecraft.entity.EnumCreatureType;
@@ -9,10 +15,12 @@ import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.network.play.server.SPacketPlayerListHeaderFooter;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.Tuple;
 import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.text.ITextComponent;
 import net.minecraft.util.text.TextComponentString;
+import net.minecraft.world.WorldServer;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -68,7 +76,14 @@ public class HUDController
         if (LoggerRegistry.__packets)
             LoggerRegistry.getLogger("packets").log(()-> packetCounter(),
                     "TOTAL_IN", PacketCounter.totalIn,
-                    "TOTAL_OUT", PacketCounter.totalOut);
+                    "TOTAL_OUT", PacketCounter.totalOut,
+                    "FLUSHES_PER_TICK", PacketCounter.getFlushesPerTick(),
+                    "BYTES_PER_FLUSH", PacketCounter.getBytesPerFlush(),
+                    "CHUNK_CACHE_HITS", ChunkPacketCache.hits,
+                    "CHUNK_CACHE_MISSES", ChunkPacketCache.misses);
+
+        if (LoggerRegistry.__lazyTileEntities)
+            log_lazy_tile_entities(server);
 
         for (EntityPlayer player: player_huds.keySet())
         {
@@ -88,10 +103,14 @@ public class HUDController
         }
         int next = 900 - previous;
         String color = Messenger.heatmap_color(previous,860);
+        int queue = ChunkSavePipeline.getQueueDepth();
+        double kbps = ChunkSavePipeline.updateBytesPerSecond() / 1024.0D;
         ITextComponent[] message = new ITextComponent[]{Messenger.m(null,
                 "g Prev: ", String.format(Locale.US, "%s %d",color, previous),
-                "g  Next: ", String.format(Locale.US,"%s %d", color, next))};
-        LoggerRegistry.getLogger("autosave").log(() -> message, "Prev", previous, "Next", next);
+                "g  Next: ", String.format(Locale.US,"%s %d", color, next),
+                "g  Queue: ", String.format(Locale.US,"w %d", queue),
+                "g  Write: ", String.format(Locale.US,"w %.1fKB/s", kbps))};
+        LoggerRegistry.getLogger("autosave").log(() -> message, "Prev", previous, "Next", next, "Queue", queue, "KBps", kbps);
     }
 
     private static void log_tps(MinecraftServer server)
@@ -166,12 +185,58 @@ public class HUDController
         List<ITextComponent> res = counter == null ? Collections.emptyList() : counter.format(server, false, true);
         return new ITextComponent[]{ Messenger.m(null, res.toArray(new Object[0]))};
     }
+    private static void log_lazy_tile_entities(MinecraftServer server)
+    {
+        List<ITextComponent> lines = new ArrayList<>();
+        List<Object> commandParams = new ArrayList<>();
+        for (WorldServer world : server.worlds)
+        {
+            int asleep = 0, awake = 0;
+            for (TileEntity tileEntity : world.tickableTileEntities)
+            {
+                if (tileEntity instanceof ILazyTileEntity)
+                {
+                    if (((ILazyTileEntity) tileEntity).isSleeping()) asleep++;
+                    else awake++;
+                }
+            }
+            int dim = world.provider.getDimensionType().getId();
+            int dimIndex = SpawnReporter.dimension_index(dim);
+            List<Object> line = new ArrayList<>();
+            line.add(String.format("w %s: ", world.provider.getDimensionType().getName()));
+            line.add(String.format("l %d", asleep));
+            line.add("g  asleep, ");
+            line.add(String.format("y %d", awake));
+            line.add("g  awake");
+            for (TileEntityOptimizer.WakeUpCause cause : TileEntityOptimizer.WakeUpCause.values())
+            {
+                long wakeUps = TileEntityOptimizer.getWakeUps(dimIndex, cause);
+                if (wakeUps > 0)
+                    line.add(String.format("g , %d woken by %s", wakeUps, cause.description));
+                commandParams.add(cause.name() + "_" + dim);
+                commandParams.add(wakeUps);
+            }
+            lines.add(Messenger.m(null, line.toArray(new Object[0])));
+            Collections.addAll(commandParams, "ASLEEP_" + dim, asleep, "AWAKE_" + dim, awake);
+        }
+        TileEntityOptimizer.resetWakeUps();
+        LoggerRegistry.getLogger("lazyTileEntities").log(() -> lines.toArray(new ITextComponent[0]), commandParams.toArray());
+    }
+
     private static ITextComponent [] packetCounter()
     {
-        ITextComponent [] ret =  new ITextComponent[]{
-                Messenger.m(null, "w I/" + PacketCounter.totalIn + " O/" + PacketCounter.totalOut),
-        };
+        List<ITextComponent> ret = new ArrayList<>();
+        ret.add(Messenger.m(null, "w I/" + PacketCounter.totalIn + " O/" + PacketCounter.totalOut,
+                String.format("w  F/%.1f B/%.0f", PacketCounter.getFlushesPerTick(), PacketCounter.getBytesPerFlush())));
+        if (PacketCompression.isOffloadEnabled())
+            ret.add(Messenger.m(null, "w Z/" + PacketCompression.getOffloaded()));
+        if (PacketCompression.isCacheEnabled())
+            ret.add(Messenger.m(null, "w C/" + PacketCompression.getCacheHits() + "/" + PacketCompression.getCacheMisses()));
+        if (CarpetSettings.chunkPacketCache)
+            ret.add(Messenger.m(null, "w K/" + ChunkPacketCache.hits + "/" + ChunkPacketCache.misses));
+        PacketCompression.resetStats();
+        ChunkPacketCache.resetStats();
         PacketCounter.reset();
-        return ret;
+        return ret.toArray(new ITextComponent[0]);
     }
 }
@@ -0,0 +1,171 @@
+package carpet.utils;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Array backed list of distinct elements that knows the index of every element, so contains and remove are O(1).
+ * Removing leaves a hole that is skipped while iterating and squeezed out on the next indexed access,
+ * which keeps the order of the remaining elements unlike a swap-remove, as PlayerChunkMap depends on it.
+ */
+public class IndexedList<T> extends AbstractList<T> implements RandomAccess {
+    private Object[] elements;
+    private final Reference2IntOpenHashMap<T> indices;
+    /** Used slots, holes included */
+    private int end;
+    private int size;
+    private int compactions;
+
+    public IndexedList(int capacity) {
+        elements = new Object[Math.max(capacity, 4)];
+        indices = new Reference2IntOpenHashMap<>(capacity);
+        indices.defaultReturnValue(-1);
+    }
+
+    @Override
+    public boolean add(T element) {
+        if (indices.containsKey(element)) return false;
+        if (end == elements.length) {
+            if (size < end / 2) {
+                compact();
+            } else {
+                elements = Arrays.copyOf(elements, elements.length * 2);
+            }
+        }
+        indices.put(element, end);
+        elements[end++] = element;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object element) {
+        int index = indices.removeInt(element);
+        if (index < 0) return false;
+        elements[index] = null;
+        size--;
+        modCount++;
+        if (size == 0) end = 0;
+        return true;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> collection) {
+        boolean changed = false;
+        for (Object element : collection) {
+            changed |= remove(element);
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return indices.containsKey(element);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        compact();
+        return (T) elements[index];
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(elements, 0, end, null);
+        indices.clear();
+        end = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void sort(Comparator<? super T> comparator) {
+        compact();
+        Arrays.sort(elements, 0, size, (Comparator<Object>) comparator);
+        for (int i = 0; i < size; i++) {
+            indices.put((T) elements[i], i);
+        }
+        modCount++;
+    }
+
+    /**
+     * Iterates in order, skipping holes. Elements can be removed through the iterator
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int next = skipHoles(0);
+            private int last = -1;
+            private int expectedModCount = modCount;
+            private int expectedCompactions = compactions;
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (modCount != expectedModCount || compactions != expectedCompactions) throw new ConcurrentModificationException();
+                if (next >= end) throw new NoSuchElementException();
+                last = next;
+                next = skipHoles(next + 1);
+                return (T) elements[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0 || elements[last] == null) throw new IllegalStateException();
+                if (modCount != expectedModCount || compactions != expectedCompactions) throw new ConcurrentModificationException();
+                IndexedList.this.remove(elements[last]);
+                expectedModCount = modCount;
+                last = -1;
+                // removing the last element resets end
+                if (size == 0) next = 0;
+            }
+        };
+    }
+
+    private int skipHoles(int index) {
+        while (index < end && elements[index] == null) index++;
+        return index;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void compact() {
+        if (size == end) return;
+        int j = 0;
+        for (int i = 0; i < end; i++) {
+            Object element = elements[i];
+            if (element != null) {
+                if (i != j) {
+                    elements[j] = element;
+                    indices.put((T) element, j);
+                }
+                j++;
+            }
+        }
+        Arrays.fill(elements, j, end, null);
+        end = j;
+        // logical indices don't change, only iterators over the slots notice
+        compactions++;
+    }
+}
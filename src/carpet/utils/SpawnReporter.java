@@ -4,8 +4,12 @@ package carpet.utils;
 import java.util.List;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
+import it.unimi.dsi.fastutil.objects.Reference2LongLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongMap;
+
 import net.minecraft.util.Tuple;
 import net.minecraft.util.text.ITextComponent;
 import net.minecraft.world.World;
@@ -32,30 +36,33 @@ public class SpawnReporter
 {
     public static boolean mock_spawns = false;
     
-    public static Long track_spawns = 0L;
+    public static long track_spawns = 0L;
     public static final HashMap<Integer, HashMap<EnumCreatureType, Tuple<Integer,Integer>>> mobcaps = new HashMap<>();
-    public static final HashMap<String, HashMap<String,Long>> spawn_stats = new HashMap<String, HashMap<String,Long>>();
     public static double mobcap_exponent = 0.0D;
-    
-    public static final HashMap<String, Long> spawn_attempts = new HashMap<String, Long>();
-    public static final HashMap<String, Long> overall_spawn_ticks = new HashMap<String, Long>();
-    public static final HashMap<String, Long> spawn_ticks_full = new HashMap<String, Long>();
-    public static final HashMap<String, Long> spawn_ticks_fail = new HashMap<String, Long>();
-    public static final HashMap<String, Long> spawn_ticks_succ = new HashMap<String, Long>();
-    public static final HashMap<String, Long> spawn_ticks_spawns = new HashMap<String, Long>();
-    public static final HashMap<String, Long> spawn_cap_count = new HashMap<String, Long>();
+
+    // tracked counts are indexed by [dimension_index][creature type ordinal], names are only looked up for the report
+    private static final EnumCreatureType[] creature_types = EnumCreatureType.values();
+    private static final String[] dimension_suffixes = {"", " (N)", " (E)"};
+    public static final List<Reference2LongLinkedOpenHashMap<Class<? extends Entity>>> spawn_stats = new ArrayList<>();
+    public static final long[][] spawn_attempts = new long[3][creature_types.length];
+    public static final long[][] overall_spawn_ticks = new long[3][creature_types.length];
+    public static final long[][] spawn_ticks_full = new long[3][creature_types.length];
+    public static final long[][] spawn_ticks_fail = new long[3][creature_types.length];
+    public static final long[][] spawn_ticks_succ = new long[3][creature_types.length];
+    public static final long[][] spawn_ticks_spawns = new long[3][creature_types.length];
+    public static final long[][] spawn_cap_count = new long[3][creature_types.length];
     public static class SpawnPos
     {
-        public String mob;
+        public Class<? extends Entity> mob;
         public BlockPos pos;
-        public SpawnPos(String mob, BlockPos pos)
+        public SpawnPos(Class<? extends Entity> mob, BlockPos pos)
         {
             this.mob = mob;
             this.pos = pos;
         }
     }
-    public static final HashMap<String, EvictingQueue<SpawnPos, Integer>> spawned_mobs = new HashMap<>();
-    public static final HashMap<String, Integer> spawn_tries = new HashMap<>();
+    public static final List<EvictingQueue<SpawnPos, Integer>> spawned_mobs = new ArrayList<>();
+    public static final int[] spawn_tries = new int[creature_types.length];
     public static BlockPos lower_spawning_limit = null;
     public static BlockPos upper_spawning_limit = null;
 
@@ -63,8 +70,18 @@ public class SpawnReporter
         reset_spawn_stats(true);
     }
 
-    public static void registerSpawn(EntityLiving el, String type, String mob, BlockPos pos) { registerSpawn(el, type, mob, pos, 1L);}
-    public static void registerSpawn(EntityLiving el, String type, String mob, BlockPos pos, long value)
+    public static int dimension_index(int dim)
+    {
+        return (dim == 0) ? 0 : ((dim < 0) ? 1 : 2);
+    }
+
+    public static String get_mob_name(Class<? extends Entity> mob)
+    {
+        return EntityList.getTranslationName(EntityList.getKey(mob));
+    }
+
+    public static void registerSpawn(EntityLiving el, EnumCreatureType type, BlockPos pos) { registerSpawn(el, type, pos, 1L);}
+    public static void registerSpawn(EntityLiving el, EnumCreatureType type, BlockPos pos, long value)
     {
         if (lower_spawning_limit != null)
         {
@@ -77,9 +94,8 @@ public class SpawnReporter
             }
         }
         
-        long count = spawn_stats.get(type).getOrDefault(mob, 0L);
-        spawn_stats.get(type).put(mob, count + value);
-        spawned_mobs.get(type).put(new SpawnPos(mob, new BlockPos(el)), 1);
+        spawn_stats.get(type.ordinal()).addTo(el.getClass(), value);
+        spawned_mobs.get(type.ordinal()).put(new SpawnPos(el.getClass(), new BlockPos(el)), 1);
     }
 
 
@@ -93,11 +109,11 @@ public class SpawnReporter
             Tuple<Integer, Integer> stat = mobcaps.get(dim).getOrDefault(enumcreaturetype, new Tuple<>(0,0));
             int cur = stat.getFirst();
             int max = stat.getSecond();
-            int rounds = spawn_tries.get(type_code);
+            int rounds = spawn_tries[enumcreaturetype.ordinal()];
             lst.add( Messenger.m(null,
                     String.format("w   %s: ",type_code),
                     (cur+max==0)?"g -/-":String.format("%s %d/%d", (cur >= max)?"r":((cur >= 8*max/10)?"y":"l") ,cur, max),
-                    (rounds == 1)?"w ":String.format("fi  (%d rounds/tick)",spawn_tries.get(type_code))
+                    (rounds == 1)?"w ":String.format("fi  (%d rounds/tick)",rounds)
             ));
         }
         return lst;
@@ -128,9 +144,9 @@ public class SpawnReporter
         String type_code = get_type_string(creature_type);
         
         lst.add(Messenger.s(null, String.format("Recent %s spawns:",type_code)));
-        for (SpawnPos entry: spawned_mobs.get(type_code).keySet())
+        for (SpawnPos entry: spawned_mobs.get(creature_type.ordinal()).keySet())
         {
-            lst.add( Messenger.m(null, String.format("w  - %s ",entry.mob), Messenger.tp("wb",entry.pos)));
+            lst.add( Messenger.m(null, String.format("w  - %s ",get_mob_name(entry.mob)), Messenger.tp("wb",entry.pos)));
         }
         
         if (lst.size()==1)
@@ -270,27 +286,21 @@ public class SpawnReporter
     {
         spawn_stats.clear();
         spawned_mobs.clear();
-        for (EnumCreatureType enumcreaturetype : EnumCreatureType.values())
+        for (EnumCreatureType enumcreaturetype : creature_types)
         {
-            String type_code = String.format("%s", enumcreaturetype);
             if (full)
             {
-                spawn_tries.put(type_code, 1);
+                spawn_tries[enumcreaturetype.ordinal()] = 1;
             }
-            for (String suffix: new String[] {""," (N)"," (E)"})
+            spawn_stats.add(new Reference2LongLinkedOpenHashMap<>());
+            spawned_mobs.add(new EvictingQueue<>());
+        }
+        for (long[][] counts : new long[][][] {overall_spawn_ticks, spawn_attempts, spawn_ticks_full, spawn_ticks_fail, spawn_ticks_succ, spawn_ticks_spawns, spawn_cap_count})
+        {
+            for (long[] dimension_counts : counts)
             {
-                String code = type_code+suffix;
-                overall_spawn_ticks.put(code, 0L);
-                spawn_attempts.put(code, 0L);
-                spawn_ticks_full.put(code, 0L);
-                spawn_ticks_fail.put(code, 0L);
-                spawn_ticks_succ.put(code, 0L);
-                spawn_ticks_spawns.put(code, 0L);
-                spawn_cap_count.put(code, 0L);
+                Arrays.fill(dimension_counts, 0L);
             }
-            
-            spawn_stats.put(type_code, new HashMap<>());
-            spawned_mobs.put(type_code, new EvictingQueue<>());
         }
         mobcaps.put(-1,new HashMap<>());
         mobcaps.put(0,new HashMap<>());
@@ -309,43 +319,43 @@ public class SpawnReporter
                     "w ' to enable"));
             return report;
         }
-        Long duration = (long) worldIn.getMinecraftServer().getTickCounter() - track_spawns;
+        long duration = (long) worldIn.getMinecraftServer().getTickCounter() - track_spawns;
         report.add(Messenger.m(null, "bw --------------------"));
         String simulated = mock_spawns?"[SIMULATED] ":"";
         String location = (lower_spawning_limit != null)?String.format("[in (%d, %d, %d)x(%d, %d, %d)]",
                 lower_spawning_limit.getX(),lower_spawning_limit.getY(),lower_spawning_limit.getZ(),
                 upper_spawning_limit.getX(),upper_spawning_limit.getY(),upper_spawning_limit.getZ() ):"";
         report.add(Messenger.s(null, String.format("%sSpawn statistics %s: for %.1f min", simulated, location, (duration/72000.0)*60)));
-        for (EnumCreatureType enumcreaturetype : EnumCreatureType.values())
+        for (EnumCreatureType enumcreaturetype : creature_types)
         {
             String type_code = String.format("%s", enumcreaturetype);
+            int t = enumcreaturetype.ordinal();
             boolean there_are_mobs_to_list = false;
-            for (String world_code: new String[] {"", " (N)", " (E)"})  
+            for (int d = 0; d < dimension_suffixes.length; d++)
             {
-                String code = type_code+world_code;
-                if (spawn_ticks_spawns.get(code) > 0L)
+                if (spawn_ticks_spawns[d][t] > 0L)
                 {
                     there_are_mobs_to_list = true;
-                    double hours = overall_spawn_ticks.get(code)/72000.0;
+                    double hours = overall_spawn_ticks[d][t]/72000.0;
                     report.add(Messenger.s(null, String.format(" > %s (%.1f min), %.1f m/t, {%.1f%%F / %.1f%%- / %.1f%%+}; %.2f s/att",
-                        code,
+                        type_code+dimension_suffixes[d],
                         60*hours,
-                        (1.0D*spawn_cap_count.get(code))/ spawn_attempts.get(code),
-                        (100.0D*spawn_ticks_full.get(code))/ spawn_attempts.get(code),
-                        (100.0D*spawn_ticks_fail.get(code))/ spawn_attempts.get(code),
-                        (100.0D*spawn_ticks_succ.get(code))/ spawn_attempts.get(code),
-                        (1.0D*spawn_ticks_spawns.get(code))/(spawn_ticks_fail.get(code)+spawn_ticks_succ.get(code))
+                        (1.0D*spawn_cap_count[d][t])/ spawn_attempts[d][t],
+                        (100.0D*spawn_ticks_full[d][t])/ spawn_attempts[d][t],
+                        (100.0D*spawn_ticks_fail[d][t])/ spawn_attempts[d][t],
+                        (100.0D*spawn_ticks_succ[d][t])/ spawn_attempts[d][t],
+                        (1.0D*spawn_ticks_spawns[d][t])/(spawn_ticks_fail[d][t]+spawn_ticks_succ[d][t])
                     )));
                 }
             }
             if (there_are_mobs_to_list)
             {
-                for (String creature_name : spawn_stats.get(type_code).keySet())
+                for (Reference2LongMap.Entry<Class<? extends Entity>> entry : spawn_stats.get(t).reference2LongEntrySet())
                 {
                     report.add(Messenger.s(null, String.format("   - %s: %d spawns, %d per hour",
-                            creature_name,
-                            spawn_stats.get(type_code).get(creature_name),
-                            (72000 * spawn_stats.get(type_code).get(creature_name)/duration ))));
+                            get_mob_name(entry.getKey()),
+                            entry.getLongValue(),
+                            (72000 * entry.getLongValue()/duration ))));
                 }
             }
         }
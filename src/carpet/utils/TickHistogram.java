@@ -0,0 +1,136 @@
+package carpet.utils;
+
+import java.util.Arrays;
+
+/**
+ * Rolling log-linear histogram of durations, in the spirit of HdrHistogram.
+ * Values are recorded in microseconds into buckets with 8 sub-buckets per power of two (~12.5% precision),
+ * the window is split into slices so old samples can be dropped a whole slice at a time.
+ * Recording never allocates.
+ */
+public class TickHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36; // ~19 hours, anything above is clamped
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final int[][] counts;
+    private final long[] max;
+    private final long[] total;
+    private int slice = 0;
+
+    public TickHistogram(int slices)
+    {
+        this.counts = new int[slices][BUCKETS];
+        this.max = new long[slices];
+        this.total = new long[slices];
+    }
+
+    private static int bucket(long micros)
+    {
+        if (micros < SUB_BUCKETS)
+        {
+            return (int) Math.max(micros, 0L);
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+        int sub = (int) (Math.min(micros >>> (exponent - SUB_BUCKET_BITS), 2 * SUB_BUCKETS - 1)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Highest value in microseconds that falls into the given bucket
+     */
+    private static long bucket_upper(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    public void record(long nanos)
+    {
+        long micros = nanos / 1000L;
+        counts[slice][bucket(micros)]++;
+        total[slice]++;
+        if (nanos > max[slice])
+        {
+            max[slice] = nanos;
+        }
+    }
+
+    /**
+     * Moves to the next slice, dropping the samples that fell out of the window
+     */
+    public void advance()
+    {
+        slice = (slice + 1) % counts.length;
+        Arrays.fill(counts[slice], 0);
+        max[slice] = 0L;
+        total[slice] = 0L;
+    }
+
+    public void clear()
+    {
+        for (int s = 0; s < counts.length; s++)
+        {
+            Arrays.fill(counts[s], 0);
+        }
+        Arrays.fill(max, 0L);
+        Arrays.fill(total, 0L);
+    }
+
+    public long count()
+    {
+        long sum = 0L;
+        for (long t : total)
+        {
+            sum += t;
+        }
+        return sum;
+    }
+
+    /**
+     * @return Largest recorded value in the window, in nanoseconds
+     */
+    public long max()
+    {
+        long result = 0L;
+        for (long m : max)
+        {
+            result = Math.max(result, m);
+        }
+        return result;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return Value at the given percentile in nanoseconds, never above the recorded maximum
+     */
+    public long percentile(double percentile)
+    {
+        long count = count();
+        if (count == 0L)
+        {
+            return 0L;
+        }
+        long target = Math.max(1L, (long) Math.ceil(count * percentile / 100.0D));
+        long seen = 0L;
+        for (int b = 0; b < BUCKETS; b++)
+        {
+            for (int s = 0; s < counts.length; s++)
+            {
+                seen += counts[s][b];
+            }
+            if (seen >= target)
+            {
+                return Math.min(bucket_upper(b) * 1000L + 999L, max());
+            }
+        }
+        return max();
+    }
+}
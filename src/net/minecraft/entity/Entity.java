@@ -86,6 +86,7 @@ import org.apache.logging.log4j.Logger;
 import carpet.CarpetSettings;
 import carpet.helpers.BabyGrowingUp;
 import carpet.helpers.BlockRotator;
+import carpet.helpers.CreatureCounts;
 
 public abstract class Entity implements ICommandSender
 {
@@ -225,6 +226,9 @@ public abstract class Entity implements ICommandSender
     private boolean isPositionDirty;
     private final double[] pistonDeltas;
     private long pistonDeltasGameTime;
+    /** CM: the mob cap counts this entity is counted in, and the creature types it adds to */
+    public CreatureCounts creatureCounts;
+    public int countedCreatureTypes;
 
         //CM
     public String cm_name() { return "Other Entity"; }
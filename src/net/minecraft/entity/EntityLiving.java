@@ -57,6 +57,7 @@ import net.minecraft.world.storage.loot.LootContext;
 import net.minecraft.world.storage.loot.LootTable;
 
 import carpet.CarpetSettings;
+import carpet.helpers.CreatureCounts;
 import net.minecraft.util.text.TextFormatting;
 
 public abstract class EntityLiving extends EntityLivingBase
@@ -509,6 +510,7 @@ public abstract class EntityLiving extends EntityLivingBase
         }
 
         this.persistenceRequired = compound.getBoolean("PersistenceRequired");
+        CreatureCounts.onPersistenceChanged(this); // CM
 
         if (compound.hasKey("ArmorItems", 9))
         {
@@ -756,6 +758,7 @@ public abstract class EntityLiving extends EntityLivingBase
             }
 
             this.persistenceRequired = true;
+            CreatureCounts.onPersistenceChanged(this); // CM
             this.onItemPickup(itemEntity, itemstack.getCount());
             itemEntity.setDead();
         }
@@ -1285,6 +1288,7 @@ public abstract class EntityLiving extends EntityLivingBase
     public void enablePersistence()
     {
         this.persistenceRequired = true;
+        CreatureCounts.onPersistenceChanged(this); // CM
     }
 
     public void setDropChance(EntityEquipmentSlot slotIn, float chance)
@@ -76,6 +76,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import carpet.CarpetSettings;
+import carpet.helpers.EntityCollisions;
 import carpet.logging.logHelpers.DamageReporter;
 
 public abstract class EntityLivingBase extends Entity
@@ -2586,12 +2587,21 @@ public abstract class EntityLivingBase extends Entity
         // Collision calculations are cancelled if canBePushed() is false. Return here to lag optimize the collision code. CARPET-XCOM
         if(CarpetSettings.optimizedCollisionCancellations && !canBePushed() && !(this instanceof net.minecraft.entity.boss.EntityDragon)) return;
 
-        List<Entity> list = this.world.getEntitiesInAABBexcluding(this, this.getEntityBoundingBox(), EntitySelectors.getTeamCollisionPredicate(this));
+        int i = this.world.getGameRules().getInt("maxEntityCramming");
+        List<Entity> list;
 
-        if (!list.isEmpty())
+        // CM: with the collisions capped only the start of the list is used, no need to list the whole crowd
+        if (CarpetSettings.maxEntityCollisions > 0)
+        {
+            list = EntityCollisions.getCollidingEntities(this, EntitySelectors.getTeamCollisionPredicate(this), CarpetSettings.maxEntityCollisions, i);
+        }
+        else
         {
-            int i = this.world.getGameRules().getInt("maxEntityCramming");
+            list = this.world.getEntitiesInAABBexcluding(this, this.getEntityBoundingBox(), EntitySelectors.getTeamCollisionPredicate(this));
+        }
 
+        if (!list.isEmpty())
+        {
             if (i > 0 && list.size() > i - 1 && this.rand.nextInt(4) == 0)
             {
                 int j = 0;
@@ -1,5 +1,6 @@
 package net.minecraft.entity;
 
+import carpet.CarpetSettings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import java.util.List;
@@ -56,6 +57,8 @@ public class EntityTracker
     private final IntHashMap<EntityTrackerEntry> trackedEntityHashTable = new IntHashMap<EntityTrackerEntry>();
     /** "Max track distance", measured in blocks. */
     private int maxTrackingDistanceThreshold;
+    /** CM: spatial index for spatialEntityTracker */
+    private final EntityTrackerGrid grid = new EntityTrackerGrid();
 
     public EntityTracker(WorldServer theWorldIn)
     {
@@ -219,8 +222,10 @@ public class EntityTracker
             }
 
             EntityTrackerEntry entitytrackerentry = new EntityTrackerEntry(entityIn, trackingRange, this.maxTrackingDistanceThreshold, updateFrequency, sendVelocityUpdates);
+            entitytrackerentry.setGrid(this.grid);
             this.entries.add(entitytrackerentry);
             this.trackedEntityHashTable.addKey(entityIn.getEntityId(), entitytrackerentry);
+            this.grid.move(entitytrackerentry);
             entitytrackerentry.updatePlayerEntities(this.world.playerEntities);
         }
         catch (Throwable throwable)
@@ -290,6 +295,7 @@ public class EntityTracker
         if (entitytrackerentry1 != null)
         {
             this.entries.remove(entitytrackerentry1);
+            this.grid.remove(entitytrackerentry1);
             entitytrackerentry1.sendDestroyEntityPacketToTrackedPlayers();
         }
     }
@@ -298,9 +304,19 @@ public class EntityTracker
     {
         List<EntityPlayerMP> list = Lists.<EntityPlayerMP>newArrayList();
 
+        if (CarpetSettings.spatialEntityTracker)
+        {
+            this.grid.update(this.entries, this.world.playerEntities);
+        }
+        else
+        {
+            this.grid.deactivate();
+        }
+
         for (EntityTrackerEntry entitytrackerentry : this.entries)
         {
             entitytrackerentry.updatePlayerList(this.world.playerEntities);
+            this.grid.move(entitytrackerentry);
 
             if (entitytrackerentry.playerEntitiesUpdated)
             {
@@ -317,6 +333,12 @@ public class EntityTracker
         {
             EntityPlayerMP entityplayermp = list.get(i);
 
+            if (this.grid.isActive())
+            {
+                this.grid.updateVisibility(entityplayermp, this.maxTrackingDistanceThreshold);
+                continue;
+            }
+
             for (EntityTrackerEntry entitytrackerentry1 : this.entries)
             {
                 if (entitytrackerentry1.getTrackedEntity() != entityplayermp)
@@ -364,6 +386,17 @@ public class EntityTracker
 
     public void removePlayerFromTrackers(EntityPlayerMP player)
     {
+        if (this.grid.isActive())
+        {
+            // only the entries tracking the player can change
+            for (EntityTrackerEntry entitytrackerentry : this.grid.getTrackedBy(player))
+            {
+                entitytrackerentry.removeTrackedPlayerSymmetric(player);
+            }
+
+            return;
+        }
+
         for (EntityTrackerEntry entitytrackerentry : this.entries)
         {
             entitytrackerentry.removeTrackedPlayerSymmetric(player);
@@ -112,6 +112,13 @@ public class EntityTrackerEntry
     public boolean playerEntitiesUpdated;
     /** Holds references to all the players that are currently receiving position updates for this entity. */
     private final Set<EntityPlayerMP> trackingPlayers = Sets.<EntityPlayerMP>newHashSet();
+    /** CM: spatial index of the tracker, kept informed of tracking changes */
+    private EntityTrackerGrid grid;
+    /** CM: cell of the entry in the grid, only valid while inGridCell is set */
+    long gridCell;
+    boolean inGridCell;
+    /** CM: position of the entry in the iteration order of the tracker entries this tick */
+    int gridOrder;
 
     public EntityTrackerEntry(Entity entityIn, int rangeIn, int maxRangeIn, int updateFrequencyIn, boolean sendVelocityUpdatesIn)
     {
@@ -157,7 +164,15 @@ public class EntityTrackerEntry
             this.lastTrackedEntityPosZ = this.trackedEntity.posZ;
             this.updatedPlayerVisibility = true;
             this.playerEntitiesUpdated = true;
-            this.updatePlayerEntities(players);
+
+            if (this.grid != null && this.grid.isActive())
+            {
+                this.grid.updatePlayerEntities(this, players);
+            }
+            else
+            {
+                this.updatePlayerEntities(players);
+            }
         }
 
         List<Entity> list = this.trackedEntity.getPassengers();
@@ -379,6 +394,11 @@ public class EntityTrackerEntry
         {
             this.trackedEntity.removeTrackingPlayer(entityplayermp);
             entityplayermp.removeEntity(this.trackedEntity);
+
+            if (this.grid != null)
+            {
+                this.grid.onStopTracking(this, entityplayermp);
+            }
         }
     }
 
@@ -400,7 +420,7 @@ public class EntityTrackerEntry
         {
             this.trackedEntity.removeTrackingPlayer(playerMP);
             playerMP.removeEntity(this.trackedEntity);
-            this.trackingPlayers.remove(playerMP);
+            this.removeTrackingPlayer(playerMP);
         }
     }
 
@@ -412,7 +432,7 @@ public class EntityTrackerEntry
             {
                 if (!this.trackingPlayers.contains(playerMP) && (this.isPlayerWatchingThisChunk(playerMP) || this.trackedEntity.forceSpawn))
                 {
-                    this.trackingPlayers.add(playerMP);
+                    this.addTrackingPlayer(playerMP);
                     Packet<?> packet = this.createSpawnPacket();
                     playerMP.connection.sendPacket(packet);
 
@@ -502,7 +522,7 @@ public class EntityTrackerEntry
             }
             else if (this.trackingPlayers.contains(playerMP))
             {
-                this.trackingPlayers.remove(playerMP);
+                this.removeTrackingPlayer(playerMP);
                 this.trackedEntity.removeTrackingPlayer(playerMP);
                 playerMP.removeEntity(this.trackedEntity);
             }
@@ -719,7 +739,7 @@ public class EntityTrackerEntry
     {
         if (this.trackingPlayers.contains(playerMP))
         {
-            this.trackingPlayers.remove(playerMP);
+            this.removeTrackingPlayer(playerMP);
             this.trackedEntity.removeTrackingPlayer(playerMP);
             playerMP.removeEntity(this.trackedEntity);
         }
@@ -744,4 +764,58 @@ public class EntityTrackerEntry
     {
         this.updatedPlayerVisibility = false;
     }
+
+    public void setGrid(EntityTrackerGrid gridIn)
+    {
+        this.grid = gridIn;
+    }
+
+    private void addTrackingPlayer(EntityPlayerMP playerMP)
+    {
+        this.trackingPlayers.add(playerMP);
+
+        if (this.grid != null)
+        {
+            this.grid.onStartTracking(this, playerMP);
+        }
+    }
+
+    private void removeTrackingPlayer(EntityPlayerMP playerMP)
+    {
+        this.trackingPlayers.remove(playerMP);
+
+        if (this.grid != null)
+        {
+            this.grid.onStopTracking(this, playerMP);
+        }
+    }
+
+    /**
+     * Copy of the players tracking this entity, safe to iterate while tracking changes
+     */
+    public EntityPlayerMP[] getTrackingPlayers()
+    {
+        return this.trackingPlayers.toArray(new EntityPlayerMP[this.trackingPlayers.size()]);
+    }
+
+    /**
+     * Last position sent to the players, the one visibility is checked against
+     */
+    public double getEncodedPosX()
+    {
+        return (double)this.encodedPosX / 4096.0D;
+    }
+
+    public double getEncodedPosZ()
+    {
+        return (double)this.encodedPosZ / 4096.0D;
+    }
+
+    /**
+     * Upper bound of the distance isVisibleTo accepts
+     */
+    public int getMaxVisibleRange()
+    {
+        return CarpetSettings.entityTrackerFix ? this.maxRange : Math.min(this.range, this.maxRange);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,281 @@
+package net.minecraft.entity;
+
+import com.google.common.collect.Sets;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+
+/**
+ * CM: spatial index for the entity tracker, used with the spatialEntityTracker rule.
+ * Players and tracker entries are bucketed in columns of 64 blocks, so visibility checks only look at the
+ * players or entries close enough to possibly see each other, plus the ones already tracking each other.
+ * Checking a pair that can't see each other is a no-op in vanilla, so skipping those keeps the same behavior.
+ */
+public class EntityTrackerGrid
+{
+    private static final int CELL_SHIFT = 6;
+    private static final Comparator<EntityTrackerEntry> ORDER = Comparator.comparingInt(entry -> entry.gridOrder);
+    /** Players, rebuilt at the start of each tracker tick */
+    private final Long2ObjectMap<List<EntityPlayerMP>> players = new Long2ObjectOpenHashMap<List<EntityPlayerMP>>();
+    /** Entries by the cell of their last sent position, only kept while the rule is on */
+    private final Long2ObjectMap<Set<EntityTrackerEntry>> entries = new Long2ObjectOpenHashMap<Set<EntityTrackerEntry>>();
+    /** Entries each player is tracking, always kept up to date since tracking changes from many places */
+    private final Map<EntityPlayerMP, Set<EntityTrackerEntry>> tracked = new IdentityHashMap<EntityPlayerMP, Set<EntityTrackerEntry>>();
+    private int playerCount;
+    private boolean active;
+
+    public boolean isActive()
+    {
+        return this.active;
+    }
+
+    /**
+     * Rebuilds the player buckets, and the entry buckets when the grid was just switched on.
+     * Also numbers the entries in the order the tracker goes through them this tick
+     */
+    public void update(Iterable<EntityTrackerEntry> allEntries, List<EntityPlayer> allPlayers)
+    {
+        boolean activated = !this.active;
+        this.active = true;
+        int order = 0;
+
+        for (EntityTrackerEntry entry : allEntries)
+        {
+            entry.gridOrder = order++;
+
+            if (activated)
+            {
+                this.move(entry);
+            }
+        }
+
+        this.players.clear();
+        this.playerCount = allPlayers.size();
+
+        for (int i = 0; i < allPlayers.size(); ++i)
+        {
+            EntityPlayerMP player = (EntityPlayerMP)allPlayers.get(i);
+            long key = ChunkPos.asLong(MathHelper.floor(player.posX) >> CELL_SHIFT, MathHelper.floor(player.posZ) >> CELL_SHIFT);
+            List<EntityPlayerMP> list = this.players.get(key);
+
+            if (list == null)
+            {
+                list = new ArrayList<EntityPlayerMP>(2);
+                this.players.put(key, list);
+            }
+
+            list.add(player);
+        }
+    }
+
+    /**
+     * Drops the entry buckets once the rule is switched off
+     */
+    public void deactivate()
+    {
+        if (this.active)
+        {
+            this.active = false;
+            this.players.clear();
+
+            for (Set<EntityTrackerEntry> set : this.entries.values())
+            {
+                for (EntityTrackerEntry entry : set)
+                {
+                    entry.inGridCell = false;
+                }
+            }
+
+            this.entries.clear();
+        }
+    }
+
+    /**
+     * Moves the entry to the bucket of its current position
+     */
+    public void move(EntityTrackerEntry entry)
+    {
+        if (!this.active)
+        {
+            return;
+        }
+
+        long key = ChunkPos.asLong(MathHelper.floor(entry.getEncodedPosX()) >> CELL_SHIFT, MathHelper.floor(entry.getEncodedPosZ()) >> CELL_SHIFT);
+
+        if (entry.inGridCell)
+        {
+            if (entry.gridCell == key)
+            {
+                return;
+            }
+
+            this.removeFromCell(entry.gridCell, entry);
+        }
+
+        entry.gridCell = key;
+        entry.inGridCell = true;
+
+        Set<EntityTrackerEntry> set = this.entries.get(key);
+
+        if (set == null)
+        {
+            set = Sets.newIdentityHashSet();
+            this.entries.put(key, set);
+        }
+
+        set.add(entry);
+    }
+
+    public void remove(EntityTrackerEntry entry)
+    {
+        if (entry.inGridCell)
+        {
+            entry.inGridCell = false;
+            this.removeFromCell(entry.gridCell, entry);
+        }
+    }
+
+    private void removeFromCell(long key, EntityTrackerEntry entry)
+    {
+        Set<EntityTrackerEntry> set = this.entries.get(key);
+
+        if (set != null && set.remove(entry) && set.isEmpty())
+        {
+            this.entries.remove(key);
+        }
+    }
+
+    public void onStartTracking(EntityTrackerEntry entry, EntityPlayerMP player)
+    {
+        Set<EntityTrackerEntry> set = this.tracked.get(player);
+
+        if (set == null)
+        {
+            set = Sets.newIdentityHashSet();
+            this.tracked.put(player, set);
+        }
+
+        set.add(entry);
+    }
+
+    public void onStopTracking(EntityTrackerEntry entry, EntityPlayerMP player)
+    {
+        Set<EntityTrackerEntry> set = this.tracked.get(player);
+
+        if (set != null && set.remove(entry) && set.isEmpty())
+        {
+            this.tracked.remove(player);
+        }
+    }
+
+    /**
+     * Copy of the entries the player is tracking, safe to iterate while tracking changes
+     */
+    public EntityTrackerEntry[] getTrackedBy(EntityPlayerMP player)
+    {
+        Set<EntityTrackerEntry> set = this.tracked.get(player);
+        return set == null ? new EntityTrackerEntry[0] : set.toArray(new EntityTrackerEntry[set.size()]);
+    }
+
+    /**
+     * Same as EntityTrackerEntry.updatePlayerEntities for all players, but only for players in range or already tracking
+     */
+    public void updatePlayerEntities(EntityTrackerEntry entry, List<EntityPlayer> allPlayers)
+    {
+        EntityPlayerMP[] tracking = entry.getTrackingPlayers();
+
+        for (EntityPlayerMP player : tracking)
+        {
+            entry.updatePlayerEntity(player);
+        }
+
+        int range = entry.getMaxVisibleRange();
+        double x = (double)entry.getEncodedPosX();
+        double z = (double)entry.getEncodedPosZ();
+        int minX = MathHelper.floor(x - range) >> CELL_SHIFT;
+        int maxX = MathHelper.floor(x + range) >> CELL_SHIFT;
+        int minZ = MathHelper.floor(z - range) >> CELL_SHIFT;
+        int maxZ = MathHelper.floor(z + range) >> CELL_SHIFT;
+
+        if ((long)(maxX - minX + 1) * (maxZ - minZ + 1) >= this.playerCount)
+        {
+            // fewer players than cells to look at
+            entry.updatePlayerEntities(allPlayers);
+            return;
+        }
+
+        for (int cx = minX; cx <= maxX; ++cx)
+        {
+            for (int cz = minZ; cz <= maxZ; ++cz)
+            {
+                List<EntityPlayerMP> list = this.players.get(ChunkPos.asLong(cx, cz));
+
+                if (list != null)
+                {
+                    for (int i = 0; i < list.size(); ++i)
+                    {
+                        entry.updatePlayerEntity(list.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the entries that might have become visible or invisible to the player after it moved,
+     * in the order the tracker goes through its entries like vanilla, so spawn packets keep their order
+     */
+    public void updateVisibility(EntityPlayerMP player, int range)
+    {
+        List<EntityTrackerEntry> candidates = new ArrayList<EntityTrackerEntry>();
+        Set<EntityTrackerEntry> trackedSet = this.tracked.get(player);
+
+        if (trackedSet != null)
+        {
+            candidates.addAll(trackedSet);
+        }
+
+        int minX = MathHelper.floor(player.posX - range) >> CELL_SHIFT;
+        int maxX = MathHelper.floor(player.posX + range) >> CELL_SHIFT;
+        int minZ = MathHelper.floor(player.posZ - range) >> CELL_SHIFT;
+        int maxZ = MathHelper.floor(player.posZ + range) >> CELL_SHIFT;
+
+        for (int cx = minX; cx <= maxX; ++cx)
+        {
+            for (int cz = minZ; cz <= maxZ; ++cz)
+            {
+                Set<EntityTrackerEntry> set = this.entries.get(ChunkPos.asLong(cx, cz));
+
+                if (set != null)
+                {
+                    candidates.addAll(set);
+                }
+            }
+        }
+
+        candidates.sort(ORDER);
+        EntityTrackerEntry last = null;
+
+        for (int i = 0; i < candidates.size(); ++i)
+        {
+            EntityTrackerEntry entry = candidates.get(i);
+
+            // tracked entries can also be in range
+            if (entry != last && entry.getTrackedEntity() != player)
+            {
+                entry.updatePlayerEntity(player);
+            }
+
+            last = entry;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package net.minecraft.entity.item;
 
+import carpet.CarpetSettings;
+import carpet.helpers.ItemCapture;
 import java.util.List;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.player.EntityPlayer;
@@ -16,6 +18,7 @@ import net.minecraft.util.DamageSource;
 import net.minecraft.util.EntitySelectors;
 import net.minecraft.util.EnumHand;
 import net.minecraft.util.datafix.DataFixer;
+import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
@@ -169,6 +172,12 @@ public class EntityMinecartHopper extends EntityMinecartContainer implements IHo
         {
             return true;
         }
+        else if (CarpetSettings.optimizedItemCapture)
+        {
+            AxisAlignedBB axisalignedbb = this.getEntityBoundingBox();
+            ItemCapture.capture(this, axisalignedbb.minX - 0.25D, axisalignedbb.minY, axisalignedbb.minZ - 0.25D, axisalignedbb.maxX + 0.25D, axisalignedbb.maxY, axisalignedbb.maxZ + 0.25D, true);
+            return false;
+        }
         else
         {
             List<EntityItem> list = this.world.<EntityItem>getEntitiesWithinAABB(EntityItem.class, this.getEntityBoundingBox().grow(0.25D, 0.0D, 0.25D), EntitySelectors.IS_ALIVE);
@@ -1,20 +1,27 @@
 package net.minecraft.network;
 
+import carpet.helpers.PacketCompression;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.MessageToByteEncoder;
-import java.util.zip.Deflater;
+import io.netty.util.ReferenceCountUtil;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.concurrent.RejectedExecutionException;
 
 public class NettyCompressionEncoder extends MessageToByteEncoder<ByteBuf>
 {
-    private final byte[] buffer = new byte[8192];
-    private final Deflater deflater;
     private int threshold;
+    /** CM: packets waiting for earlier ones to be compressed on the workers, written in order */
+    private final ArrayDeque<NettyCompressionEncoder.PendingWrite> pendingWrites = new ArrayDeque<NettyCompressionEncoder.PendingWrite>();
+    private boolean flushAfterPending;
+    private boolean removed;
 
     public NettyCompressionEncoder(int thresholdIn)
     {
         this.threshold = thresholdIn;
-        this.deflater = new Deflater();
     }
 
     protected void encode(ChannelHandlerContext p_encode_1_, ByteBuf p_encode_2_, ByteBuf p_encode_3_) throws Exception
@@ -32,21 +39,240 @@ public class NettyCompressionEncoder extends MessageToByteEncoder<ByteBuf>
             byte[] abyte = new byte[i];
             p_encode_2_.readBytes(abyte);
             packetbuffer.writeVarInt(abyte.length);
-            this.deflater.setInput(abyte, 0, i);
-            this.deflater.finish();
+            // CM: Deflater shared by all connections of the event loop
+            PacketCompression.compress(abyte, i, PacketCompression.isCacheEnabled(), p_encode_3_);
+        }
+    }
+
+    /**
+     * CM: hands large packets to the compression workers with packetCompressionThreads, packets behind them wait
+     * until they are done so the order on the connection doesn't change
+     */
+    public void write(final ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception
+    {
+        boolean offload = msg instanceof ByteBuf && PacketCompression.isOffloadEnabled() && ((ByteBuf)msg).readableBytes() >= Math.max(this.threshold, PacketCompression.OFFLOAD_SIZE);
+
+        if (!offload && this.pendingWrites.isEmpty())
+        {
+            super.write(ctx, msg, promise);
+            return;
+        }
+
+        final NettyCompressionEncoder.PendingWrite pendingwrite = new NettyCompressionEncoder.PendingWrite(promise);
+        this.pendingWrites.add(pendingwrite);
 
-            while (!this.deflater.finished())
+        if (!offload)
+        {
+            try
             {
-                int j = this.deflater.deflate(this.buffer);
-                packetbuffer.writeBytes(this.buffer, 0, j);
+                // already compressed packets, or not a buffer at all
+                pendingwrite.complete(this.acceptOutboundMessage(msg) ? this.encodeNow(ctx, (ByteBuf)msg) : msg);
+            }
+            catch (Throwable t)
+            {
+                pendingwrite.fail(t);
             }
 
-            this.deflater.reset();
+            this.writePending(ctx);
+            return;
+        }
+
+        final byte[] data;
+        final int length;
+
+        try
+        {
+            ByteBuf in = (ByteBuf)msg;
+            length = in.readableBytes();
+            data = new byte[length];
+            in.readBytes(data);
+        }
+        catch (Throwable t)
+        {
+            pendingwrite.fail(t);
+            this.writePending(ctx);
+            return;
+        }
+        finally
+        {
+            ReferenceCountUtil.release(msg);
+        }
+
+        PacketCompression.onOffloaded();
+
+        try
+        {
+            PacketCompression.getWorkers().execute(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        pendingwrite.complete(NettyCompressionEncoder.compress(ctx, data, length));
+                    }
+                    catch (Throwable t)
+                    {
+                        pendingwrite.fail(t);
+                    }
+                    finally
+                    {
+                        ctx.executor().execute(new Runnable()
+                        {
+                            public void run()
+                            {
+                                NettyCompressionEncoder.this.writePending(ctx);
+                            }
+                        });
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            // pool was resized or stopped in between, compress here instead
+            try
+            {
+                pendingwrite.complete(compress(ctx, data, length));
+            }
+            catch (Throwable t)
+            {
+                pendingwrite.fail(t);
+            }
+
+            this.writePending(ctx);
+        }
+    }
+
+    /**
+     * CM: encodes on the event loop, for packets queued behind ones still on the workers
+     */
+    private ByteBuf encodeNow(ChannelHandlerContext ctx, ByteBuf in) throws Exception
+    {
+        ByteBuf out = ctx.alloc().ioBuffer();
+
+        try
+        {
+            this.encode(ctx, in, out);
+            return out;
+        }
+        catch (Throwable t)
+        {
+            out.release();
+            throw t;
+        }
+        finally
+        {
+            in.release();
         }
     }
 
+    /**
+     * CM: compresses an offloaded packet, called on the workers
+     */
+    private static ByteBuf compress(ChannelHandlerContext ctx, byte[] data, int length)
+    {
+        ByteBuf out = ctx.alloc().ioBuffer(length / 4 + 5);
+
+        try
+        {
+            PacketBuffer packetbuffer = new PacketBuffer(out);
+            packetbuffer.writeVarInt(length);
+            PacketCompression.compress(data, length, PacketCompression.isCacheEnabled(), out);
+            return out;
+        }
+        catch (Throwable t)
+        {
+            out.release();
+            throw t;
+        }
+    }
+
+    public void flush(ChannelHandlerContext ctx) throws Exception
+    {
+        if (!this.pendingWrites.isEmpty())
+        {
+            this.flushAfterPending = true;
+        }
+
+        ctx.flush();
+    }
+
+    /**
+     * CM: passes on the packets at the head of the queue that are done
+     */
+    private void writePending(ChannelHandlerContext ctx)
+    {
+        if (this.removed)
+        {
+            // compressed after the connection closed
+            while (!this.pendingWrites.isEmpty() && this.pendingWrites.peek().result != null)
+            {
+                NettyCompressionEncoder.PendingWrite pendingwrite = this.pendingWrites.poll();
+                ReferenceCountUtil.release(pendingwrite.result);
+                pendingwrite.promise.tryFailure(pendingwrite.cause != null ? pendingwrite.cause : new ClosedChannelException());
+            }
+
+            return;
+        }
+
+        boolean wrote = false;
+
+        while (!this.pendingWrites.isEmpty() && this.pendingWrites.peek().result != null)
+        {
+            NettyCompressionEncoder.PendingWrite pendingwrite = this.pendingWrites.poll();
+
+            if (pendingwrite.cause != null)
+            {
+                // packets behind it still go out, like when vanilla fails to encode one
+                pendingwrite.promise.tryFailure(pendingwrite.cause);
+                continue;
+            }
+
+            ctx.write(pendingwrite.result, pendingwrite.promise);
+            wrote = true;
+        }
+
+        if (wrote && this.pendingWrites.isEmpty() && this.flushAfterPending)
+        {
+            this.flushAfterPending = false;
+            ctx.flush();
+        }
+    }
+
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception
+    {
+        // finished packets still go out, the rest is dropped once compressed
+        this.writePending(ctx);
+        this.removed = true;
+        super.handlerRemoved(ctx);
+    }
+
     public void setCompressionThreshold(int thresholdIn)
     {
         this.threshold = thresholdIn;
     }
-}
\ No newline at end of file
+
+    static class PendingWrite
+    {
+        private final ChannelPromise promise;
+        /** Set before the result, which is only a marker for failed writes */
+        private Throwable cause;
+        private volatile Object result;
+
+        PendingWrite(ChannelPromise promiseIn)
+        {
+            this.promise = promiseIn;
+        }
+
+        void complete(Object resultIn)
+        {
+            this.result = resultIn;
+        }
+
+        void fail(Throwable causeIn)
+        {
+            this.cause = causeIn instanceof EncoderException ? causeIn : new EncoderException(causeIn);
+            this.result = Boolean.FALSE;
+        }
+    }
+}
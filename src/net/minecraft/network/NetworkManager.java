@@ -1,5 +1,6 @@
 package net.minecraft.network;
 
+import carpet.CarpetSettings;
 import carpet.logging.logHelpers.PacketCounter;
 import com.google.common.collect.Queues;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -7,6 +8,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.local.LocalChannel;
@@ -22,6 +24,9 @@ import java.util.Queue;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.annotation.Nullable;
 import javax.crypto.SecretKey;
+import net.minecraft.network.play.server.SPacketChat;
+import net.minecraft.network.play.server.SPacketDisconnect;
+import net.minecraft.network.play.server.SPacketKeepAlive;
 import net.minecraft.util.CryptManager;
 import net.minecraft.util.ITickable;
 import net.minecraft.util.LazyLoadBase;
@@ -65,6 +70,10 @@ public class NetworkManager extends SimpleChannelInboundHandler < Packet<? >>
     /** The queue for packets that require transmission */
     private final Queue<NetworkManager.InboundHandlerTuplePacketListener> outboundPacketsQueue = Queues.<NetworkManager.InboundHandlerTuplePacketListener>newConcurrentLinkedQueue();
     private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+    /** CM: with packetBatching, pending packets are flushed anyway once this many bytes are waiting */
+    private static final int BATCH_FLUSH_BYTES = 32768;
+    /** CM: packets were written with packetBatching since the last end of tick flush */
+    private volatile boolean hasUnflushedPackets;
     /** The active channel */
     private Channel channel;
     /** The address of the remote party */
@@ -209,6 +218,13 @@ public class NetworkManager extends SimpleChannelInboundHandler < Packet<? >>
         PacketCounter.totalOut++;
         final EnumConnectionState enumconnectionstate = EnumConnectionState.getFromPacket(inPacket);
         final EnumConnectionState enumconnectionstate1 = (EnumConnectionState)this.channel.attr(PROTOCOL_ATTRIBUTE_KEY).get();
+        final boolean batch = CarpetSettings.packetBatching && enumconnectionstate == EnumConnectionState.PLAY && enumconnectionstate1 == EnumConnectionState.PLAY
+                && futureListeners == null && !isPriorityPacket(inPacket);
+
+        if (batch)
+        {
+            this.hasUnflushedPackets = true;
+        }
 
         if (enumconnectionstate1 != enumconnectionstate)
         {
@@ -223,7 +239,7 @@ public class NetworkManager extends SimpleChannelInboundHandler < Packet<? >>
                 this.setConnectionState(enumconnectionstate);
             }
 
-            ChannelFuture channelfuture = this.channel.writeAndFlush(inPacket);
+            ChannelFuture channelfuture = this.writePacket(inPacket, batch);
 
             if (futureListeners != null)
             {
@@ -243,7 +259,7 @@ public class NetworkManager extends SimpleChannelInboundHandler < Packet<? >>
                         NetworkManager.this.setConnectionState(enumconnectionstate);
                     }
 
-                    ChannelFuture channelfuture1 = NetworkManager.this.channel.writeAndFlush(inPacket);
+                    ChannelFuture channelfuture1 = NetworkManager.this.writePacket(inPacket, batch);
 
                     if (futureListeners != null)
                     {
@@ -256,6 +272,59 @@ public class NetworkManager extends SimpleChannelInboundHandler < Packet<? >>
         }
     }
 
+    /**
+     * CM: packets the client waits on, or that keep the connection alive, are never held back by packetBatching
+     */
+    private static boolean isPriorityPacket(Packet<?> packetIn)
+    {
+        return packetIn instanceof SPacketKeepAlive || packetIn instanceof SPacketChat || packetIn instanceof SPacketDisconnect;
+    }
+
+    /**
+     * CM: writes the packet, and flushes unless it is batched and the batch is still small. Runs on the event loop
+     */
+    private ChannelFuture writePacket(Packet<?> packetIn, boolean batch)
+    {
+        ChannelFuture channelfuture = this.channel.write(packetIn);
+
+        if (!batch || this.getPendingBytes() >= BATCH_FLUSH_BYTES)
+        {
+            this.flushChannel();
+        }
+
+        return channelfuture;
+    }
+
+    private long getPendingBytes()
+    {
+        ChannelOutboundBuffer buffer = this.channel.unsafe().outboundBuffer();
+        return buffer == null ? 0L : buffer.totalPendingWriteBytes();
+    }
+
+    private void flushChannel()
+    {
+        PacketCounter.onFlush(this.getPendingBytes());
+        this.channel.flush();
+    }
+
+    /**
+     * CM: flushes the packets held back by packetBatching, called at the end of the tick
+     */
+    public void flushBatchedPackets()
+    {
+        if (this.hasUnflushedPackets && this.channel != null && this.channel.isOpen())
+        {
+            this.hasUnflushedPackets = false;
+            this.channel.eventLoop().execute(new Runnable()
+            {
+                public void run()
+                {
+                    NetworkManager.this.flushChannel();
+                }
+            });
+        }
+    }
+
     /**
      * Will iterate through the outboundPacketQueue and dispatch all Packets
      */
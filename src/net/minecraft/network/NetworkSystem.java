@@ -1,5 +1,6 @@
 package net.minecraft.network;
 
+import carpet.logging.logHelpers.PacketCounter;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.netty.bootstrap.ServerBootstrap;
@@ -141,6 +142,22 @@ public class NetworkSystem
         }
     }
 
+    /**
+     * CM: sends the packets held back by packetBatching during the tick
+     */
+    public void flushBatchedPackets()
+    {
+        PacketCounter.ticks++;
+
+        synchronized (this.networkManagers)
+        {
+            for (NetworkManager networkmanager : this.networkManagers)
+            {
+                networkmanager.flushBatchedPackets();
+            }
+        }
+    }
+
     /**
      * Will try to process the packets received by each NetworkManager, gracefully manage processing failures and cleans
      * up dead connections
@@ -39,6 +39,25 @@ public class SPacketChunkData implements Packet<INetHandlerPlayClient>
         boolean flag = chunkIn.getWorld().provider.hasSkyLight();
         this.buffer = new byte[this.calculateChunkSize(chunkIn, flag, changedSectionFilter)];
         this.availableSections = this.extractChunkData(new PacketBuffer(this.getWriteBuffer()), chunkIn, flag, changedSectionFilter);
+        this.extractTileEntityTags(chunkIn, changedSectionFilter);
+    }
+
+    /**
+     * CM: full chunk packet reusing section data encoded for an earlier packet of the same unchanged chunk,
+     * tile entities are always taken from the chunk
+     */
+    public SPacketChunkData(Chunk chunkIn, byte[] bufferIn, int availableSectionsIn)
+    {
+        this.chunkX = chunkIn.x;
+        this.chunkZ = chunkIn.z;
+        this.fullChunk = true;
+        this.buffer = bufferIn;
+        this.availableSections = availableSectionsIn;
+        this.extractTileEntityTags(chunkIn, 65535);
+    }
+
+    private void extractTileEntityTags(Chunk chunkIn, int changedSectionFilter)
+    {
         this.tileEntityTags = Lists.<NBTTagCompound>newArrayList();
 
         for (Entry<BlockPos, TileEntity> entry : chunkIn.getTileEntityMap().entrySet())
@@ -183,4 +202,17 @@ public class SPacketChunkData implements Packet<INetHandlerPlayClient>
     {
         return this.fullChunk;
     }
+
+    /**
+     * CM: encoded sections and biomes, shared with the packets reusing them so never modified
+     */
+    public byte[] getSectionBuffer()
+    {
+        return this.buffer;
+    }
+
+    public int getAvailableSections()
+    {
+        return this.availableSections;
+    }
 }
\ No newline at end of file
@@ -738,6 +738,10 @@ public abstract class MinecraftServer implements ICommandSender, Runnable, IThre
         {
             CarpetProfiler.start_tick_profiling();
         }
+        if (CarpetSettings.rollingProfiler)
+        {
+            CarpetProfiler.start_rolling_tick();
+        }
 
         CarpetServer.rsmmServer.tickStart(); // RSMM
         WorldHelper.startTickTask(TickTask.TICK); // RSMM
@@ -771,7 +775,7 @@ public abstract class MinecraftServer implements ICommandSender, Runnable, IThre
         LagSpikeHelper.processLagSpikes(null, LagSpikeHelper.TickPhase.AUTOSAVE, LagSpikeHelper.PrePostSubPhase.PRE);
         if (this.tickCounter % 900 == 0)
         {
-            CarpetProfiler.start_section(null, "Autosave");
+            CarpetProfiler.start_section(null, CarpetProfiler.SECTION_AUTOSAVE);
             this.profiler.startSection("save");
             WorldHelper.startTickTask(TickTask.AUTOSAVE); // RSMM
             this.playerList.storeFakePlayerData();
@@ -814,6 +818,10 @@ public abstract class MinecraftServer implements ICommandSender, Runnable, IThre
 
         LagSpikeHelper.processLagSpikes(null, LagSpikeHelper.TickPhase.TICK, LagSpikeHelper.PrePostSubPhase.POST);
 
+        if (CarpetSettings.rollingProfiler)
+        {
+            CarpetProfiler.end_rolling_tick();
+        }
         if (CarpetProfiler.tick_health_requested != 0L)
         {
             CarpetProfiler.end_tick_profiling(this);
@@ -822,6 +830,8 @@ public abstract class MinecraftServer implements ICommandSender, Runnable, IThre
         if(CarpetSettings.scoreboardDelta > 0 && tickCounter % 20 == 0){
             ScoreboardDelta.update();
         }
+
+        this.getNetworkSystem().flushBatchedPackets(); // CM packetBatching
     }
 
     public void updateTimeLightAndEntities()
@@ -916,7 +926,7 @@ public abstract class MinecraftServer implements ICommandSender, Runnable, IThre
             this.timeOfLastDimensionTick[j][this.tickCounter % 100] = System.nanoTime() - i;
         }
 
-        CarpetProfiler.start_section(null, "Network");
+        CarpetProfiler.start_section(null, CarpetProfiler.SECTION_NETWORK);
         this.profiler.endStartSection("connection");
         WorldHelper.swapTickTask(TickTask.CONNECTIONS); // RSMM
         this.getNetworkSystem().networkTick();
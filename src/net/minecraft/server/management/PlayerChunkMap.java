@@ -1,18 +1,22 @@
 package net.minecraft.server.management;
 
 import carpet.CarpetSettings;
+import carpet.helpers.ChunkSendQueue;
+import carpet.utils.IndexedList;
 import com.google.common.base.Predicate;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
 import net.minecraft.entity.player.EntityPlayerMP;
@@ -45,12 +49,13 @@ public class PlayerChunkMap
     /** the hash of all playerInstances created */
     private final Long2ObjectMap<PlayerChunkMapEntry> entryMap = new Long2ObjectOpenHashMap<PlayerChunkMapEntry>(4096);
     /** the playerInstances(chunks) that need to be updated */
-    private final Set<PlayerChunkMapEntry> dirtyEntries = Sets.<PlayerChunkMapEntry>newHashSet();
-    private final List<PlayerChunkMapEntry> pendingSendToPlayers = Lists.<PlayerChunkMapEntry>newLinkedList();
+    // CM: keyed by chunk, and indexed lists, so removing entries doesn't scan them
+    private final Long2ObjectMap<PlayerChunkMapEntry> dirtyEntries = new Long2ObjectLinkedOpenHashMap<PlayerChunkMapEntry>();
+    private final List<PlayerChunkMapEntry> pendingSendToPlayers = new IndexedList<PlayerChunkMapEntry>(256);
     /** List of player instances whose chunk field is unassigned, and need the chunk at their pos to be loaded. */
-    private final List<PlayerChunkMapEntry> entriesWithoutChunks = Lists.<PlayerChunkMapEntry>newLinkedList();
+    private final List<PlayerChunkMapEntry> entriesWithoutChunks = new IndexedList<PlayerChunkMapEntry>(256);
     /** This field is using when chunk should be processed (every 8000 ticks) */
-    private final List<PlayerChunkMapEntry> entries = Lists.<PlayerChunkMapEntry>newArrayList();
+    private final List<PlayerChunkMapEntry> entries = new IndexedList<PlayerChunkMapEntry>(4096);
     /** Player view distance, in chunks. */
     private int playerViewRadius;
     /** time what is using to check if InhabitedTime should be calculated */
@@ -115,6 +120,39 @@ public class PlayerChunkMap
         };
     }
 
+    /**
+     * CM: index of the first entry from the given one whose chunk getChunkIterator would return, -1 if there is none.
+     * Lets the chunks be ticked with an index loop over the entries, without an iterator every tick
+     */
+    public int getNextTickableEntry(int from)
+    {
+        for (int i = from; i < this.entries.size(); ++i)
+        {
+            PlayerChunkMapEntry playerchunkmapentry = this.entries.get(i);
+            Chunk chunk = playerchunkmapentry.getChunk();
+
+            if (chunk == null)
+            {
+                continue;
+            }
+
+            if (!chunk.isLightPopulated() && chunk.isTerrainPopulated() || !chunk.wasTicked() || playerchunkmapentry.hasPlayerMatchingInRange(128.0D, NOT_SPECTATOR))
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * CM: chunk of the entry at an index returned by getNextTickableEntry
+     */
+    public Chunk getEntryChunk(int index)
+    {
+        return this.entries.get(index).getChunk();
+    }
+
     /**
      * updates all the player instances that need to be updated
      */
@@ -136,7 +174,7 @@ public class PlayerChunkMap
 
         if (!this.dirtyEntries.isEmpty())
         {
-            for (PlayerChunkMapEntry playerchunkmapentry2 : this.dirtyEntries)
+            for (PlayerChunkMapEntry playerchunkmapentry2 : this.dirtyEntries.values())
             {
                 playerchunkmapentry2.update();
             }
@@ -151,6 +189,36 @@ public class PlayerChunkMap
             }
         }
 
+        if (CarpetSettings.prioritizedChunkSending)
+        {
+            this.loadAndSendPrioritized();
+        }
+        else
+        {
+            this.loadAndSendVanilla(i);
+        }
+
+        if (this.players.isEmpty())
+        {
+            WorldProvider worldprovider = this.world.provider;
+
+            if (!worldprovider.canRespawnHere())
+            {
+                if(carpet.carpetclient.CarpetClientChunkLogger.logger.enabled)
+                    carpet.carpetclient.CarpetClientChunkLogger.setReason("Dimensional unloading due to no players");
+                this.world.getChunkProvider().queueUnloadAll();
+                carpet.carpetclient.CarpetClientChunkLogger.resetReason();
+            }
+        }
+
+        // Sends updates to all subscribed players that want to get indexing of chunks Carpet-XCOM
+        if(carpet.carpetclient.CarpetClientRandomtickingIndexing.sendUpdates(world)) {
+            carpet.carpetclient.CarpetClientRandomtickingIndexing.sendRandomtickingChunkOrder(world, this);
+        }
+    }
+
+    private void loadAndSendVanilla(long i)
+    {
         if (this.sortMissingChunks && i % 4L == 0L)
         {
             this.sortMissingChunks = false;
@@ -230,26 +298,84 @@ public class PlayerChunkMap
                 }
             }
         }
+    }
 
-        if (this.players.isEmpty())
+    /**
+     * CM: prioritizedChunkSending, players take turns loading and sending their closest chunks,
+     * within a global load budget per tick and a send budget per player
+     */
+    private void loadAndSendPrioritized()
+    {
+        if (!this.entriesWithoutChunks.isEmpty())
         {
-            WorldProvider worldprovider = this.world.provider;
+            long l = System.nanoTime() + 50000000L;
+            int k = CarpetSettings.chunkLoadsPerTick;
+            ChunkSendQueue queue = new ChunkSendQueue(this.entriesWithoutChunks, true);
+            Set<PlayerChunkMapEntry> loaded = Sets.<PlayerChunkMapEntry>newIdentityHashSet();
+            PlayerChunkMapEntry playerchunkmapentry1;
 
-            if (!worldprovider.canRespawnHere())
+            while (k > 0 && System.nanoTime() <= l && (playerchunkmapentry1 = queue.next()) != null)
             {
-                if(carpet.carpetclient.CarpetClientChunkLogger.logger.enabled)
-                    carpet.carpetclient.CarpetClientChunkLogger.setReason("Dimensional unloading due to no players");
-                this.world.getChunkProvider().queueUnloadAll();
-                carpet.carpetclient.CarpetClientChunkLogger.resetReason();
+                // watched by several players, already done for one of them
+                if (loaded.contains(playerchunkmapentry1) || playerchunkmapentry1.getChunk() != null)
+                {
+                    continue;
+                }
+
+                boolean flag = playerchunkmapentry1.hasPlayerMatching(CAN_GENERATE_CHUNKS);
+
+                if (playerchunkmapentry1.providePlayerChunk(flag))
+                {
+                    loaded.add(playerchunkmapentry1);
+                    ChunkSendQueue.onLoaded();
+                    --k;
+                }
+            }
+
+            if (!loaded.isEmpty())
+            {
+                this.entriesWithoutChunks.removeAll(loaded);
             }
         }
 
-        // Sends updates to all subscribed players that want to get indexing of chunks Carpet-XCOM
-        if(carpet.carpetclient.CarpetClientRandomtickingIndexing.sendUpdates(world)) {
-            carpet.carpetclient.CarpetClientRandomtickingIndexing.sendRandomtickingChunkOrder(world, this);
+        if (!this.pendingSendToPlayers.isEmpty())
+        {
+            ChunkSendQueue queue = new ChunkSendQueue(this.pendingSendToPlayers, false);
+            queue.setBudget(CarpetSettings.chunkSendBudget * 1024);
+            Set<PlayerChunkMapEntry> sent = Sets.<PlayerChunkMapEntry>newIdentityHashSet();
+            PlayerChunkMapEntry playerchunkmapentry3;
+
+            while ((playerchunkmapentry3 = queue.next()) != null)
+            {
+                if (!sent.contains(playerchunkmapentry3) && playerchunkmapentry3.sendToPlayers())
+                {
+                    sent.add(playerchunkmapentry3);
+                    queue.charge(playerchunkmapentry3.getLastPacketSize());
+                }
+            }
+
+            if (!sent.isEmpty())
+            {
+                this.pendingSendToPlayers.removeAll(sent);
+            }
         }
     }
 
+    /**
+     * CM: number of chunks waiting to be loaded or sent for each player, for the profiler
+     */
+    public Map<EntityPlayerMP, Integer> getQueuedChunkCounts()
+    {
+        Map<EntityPlayerMP, Integer> counts = new ChunkSendQueue(this.entriesWithoutChunks, true).getDepths();
+
+        for (Map.Entry<EntityPlayerMP, Integer> entry : new ChunkSendQueue(this.pendingSendToPlayers, false).getDepths().entrySet())
+        {
+            counts.merge(entry.getKey(), entry.getValue(), Integer::sum);
+        }
+
+        return counts;
+    }
+
     public boolean contains(int chunkX, int chunkZ)
     {
         long i = getIndex(chunkX, chunkZ);
@@ -533,7 +659,8 @@ public class PlayerChunkMap
      */
     public void entryChanged(PlayerChunkMapEntry entry)
     {
-        this.dirtyEntries.add(entry);
+        ChunkPos chunkpos = entry.getPos();
+        this.dirtyEntries.put(getIndex(chunkpos.x, chunkpos.z), entry);
     }
 
     public void removeEntry(PlayerChunkMapEntry entry)
@@ -543,7 +670,12 @@ public class PlayerChunkMap
         entry.updateChunkInhabitedTime();
         this.entryMap.remove(i);
         this.entries.remove(entry);
-        this.dirtyEntries.remove(entry);
+        // spectator entries aren't in the entry map and may share the position of another entry
+        if (this.dirtyEntries.get(i) == entry)
+        {
+            this.dirtyEntries.remove(i);
+        }
+
         this.pendingSendToPlayers.remove(entry);
         this.entriesWithoutChunks.remove(entry);
         Chunk chunk = entry.getChunk();
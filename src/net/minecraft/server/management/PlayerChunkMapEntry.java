@@ -21,6 +21,8 @@ import org.apache.logging.log4j.Logger;
 
 import carpet.CarpetSettings;
 import carpet.carpetclient.CarpetClientChunkLogger;
+import carpet.helpers.ChunkPacketCache;
+import carpet.helpers.ChunkSendQueue;
 import carpet.helpers.IPlayerSensitiveTileEntity;
 
 public class PlayerChunkMapEntry
@@ -36,6 +38,10 @@ public class PlayerChunkMapEntry
     private int changedSectionFilter;
     private long lastUpdateInhabitedTime;
     public boolean sentToPlayers; // CM: changed to public
+    private final ChunkPacketCache packetCache = new ChunkPacketCache(); // CM: chunkPacketCache
+    /** CM: for the chunk send latency and budget of prioritizedChunkSending */
+    private final long createdNanos = System.nanoTime();
+    private int lastPacketSize;
 
     public PlayerChunkMapEntry(PlayerChunkMap mapIn, int chunkX, int chunkZ, EntityPlayerMP player)
     {
@@ -163,7 +169,9 @@ public class PlayerChunkMapEntry
             this.changes = 0;
             this.changedSectionFilter = 0;
             this.sentToPlayers = true;
-            Packet<?> packet = new SPacketChunkData(this.chunk, 65535);
+            SPacketChunkData packet = this.packetCache.getFullChunkPacket(this.chunk);
+            this.lastPacketSize = packet.getSectionBuffer().length;
+            ChunkSendQueue.onSent(this.createdNanos, this.lastPacketSize);
 
             for (EntityPlayerMP entityplayermp : this.players)
             {
@@ -183,11 +191,19 @@ public class PlayerChunkMapEntry
     {
         if (this.sentToPlayers)
         {
-            player.connection.sendPacket(new SPacketChunkData(this.chunk, 65535));
+            player.connection.sendPacket(this.packetCache.getFullChunkPacket(this.chunk));
             this.playerChunkMap.getWorldServer().getEntityTracker().sendLeashedEntitiesInChunk(player, this.chunk);
         }
     }
 
+    /**
+     * CM: size of the blocks and light of the last full chunk packet sent to all players
+     */
+    public int getLastPacketSize()
+    {
+        return this.lastPacketSize;
+    }
+
     public void updateChunkInhabitedTime()
     {
         long i = this.playerChunkMap.getWorldServer().getTotalWorldTime();
@@ -202,6 +218,8 @@ public class PlayerChunkMapEntry
 
     public void blockChanged(int x, int y, int z)
     {
+        this.packetCache.invalidate();
+
         if (this.sentToPlayers)
         {
             if (this.changes == 0)
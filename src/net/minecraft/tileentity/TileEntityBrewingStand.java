@@ -497,4 +497,7 @@ public class TileEntityBrewingStand extends TileEntityLockable implements ITicka
     // CARPET-optimizedTileEntities
     @Override
     public void wakeUp() { this.isSleeping = false; }
+
+    @Override
+    public boolean isSleeping() { return this.isSleeping; }
 }
\ No newline at end of file
@@ -24,6 +24,7 @@ import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
 import redstone.multimeter.helper.BlockChestHelper;
 import carpet.CarpetSettings;
+import carpet.helpers.TileEntityOptimizer;
 import carpet.helpers.TileEntityOptimizer.ILazyTileEntity;
 
 public class TileEntityChest extends TileEntityLockableLoot implements ITickable, ILazyTileEntity
@@ -383,7 +384,7 @@ public class TileEntityChest extends TileEntityLockableLoot implements ITickable
     public boolean receiveClientEvent(int id, int type)
     {
         // CARPET-optimizedTileEntities: Wake up the chest when a player uses it
-        this.isSleeping = false;
+        TileEntityOptimizer.wakeUp(this.world, this, TileEntityOptimizer.WakeUpCause.BLOCK_EVENT);
 
         if (id == 1)
         {
@@ -483,4 +484,9 @@ public class TileEntityChest extends TileEntityLockableLoot implements ITickable
     public void wakeUp(){
         this.isSleeping = false;
     }
+
+    @Override
+    public boolean isSleeping(){
+        return this.isSleeping;
+    }
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import net.minecraft.util.ITickable;
 import net.minecraft.util.SoundCategory;
 
 import carpet.CarpetSettings;
+import carpet.helpers.TileEntityOptimizer;
 import carpet.helpers.TileEntityOptimizer.ILazyTileEntity;
 
 public class TileEntityEnderChest extends TileEntity implements ITickable, ILazyTileEntity
@@ -89,7 +90,7 @@ public class TileEntityEnderChest extends TileEntity implements ITickable, ILazy
     public boolean receiveClientEvent(int id, int type)
     {
         // CARPET-optimizedTileEntities: Wake up if a player is using the enderchest
-        this.isSleeping = false;
+        TileEntityOptimizer.wakeUp(this.world, this, TileEntityOptimizer.WakeUpCause.BLOCK_EVENT);
 
         if (id == 1)
         {
@@ -144,4 +145,9 @@ public class TileEntityEnderChest extends TileEntity implements ITickable, ILazy
     public void wakeUp(){
         this.isSleeping = false;
     }
+
+    @Override
+    public boolean isSleeping(){
+        return this.isSleeping;
+    }
 }
\ No newline at end of file
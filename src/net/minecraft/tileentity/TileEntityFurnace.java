@@ -308,8 +308,8 @@ public class TileEntityFurnace extends TileEntityLockable implements ITickable,
                 BlockFurnace.setState(this.isBurning(), this.world, this.pos);
             }
 
-            // CARPET-optimizedTileEntities: Fall asleep if not burning
-            if(!this.isBurning())
+            // CARPET-optimizedTileEntities: Fall asleep if not burning, once the cook progress has run out like in vanilla
+            if(!this.isBurning() && this.cookTime == 0)
                 this.isSleeping = true;
         }
 
@@ -644,4 +644,9 @@ public class TileEntityFurnace extends TileEntityLockable implements ITickable,
     public void wakeUp(){
         this.isSleeping = false;
     }
+
+    @Override
+    public boolean isSleeping(){
+        return this.isSleeping;
+    }
 }
\ No newline at end of file
@@ -35,6 +35,7 @@ import net.minecraft.item.EnumDyeColor;
 import carpet.helpers.TileEntityOptimizer.ILazyTileEntity;
 import carpet.CarpetSettings;
 import carpet.helpers.HopperCounter;
+import carpet.helpers.ItemCapture;
 import carpet.utils.WoolTool;
 
 public class TileEntityHopper extends TileEntityLockableLoot implements IHopper, ITickable, ILazyTileEntity
@@ -493,6 +494,13 @@ public class TileEntityHopper extends TileEntityLockableLoot implements IHopper,
                 ((TileEntityHopper)hopper).pullSleeping = true;
             }
         }
+        else if (CarpetSettings.optimizedItemCapture)
+        {
+            double x = hopper.getXPos();
+            double y = hopper.getYPos();
+            double z = hopper.getZPos();
+            return ItemCapture.capture(hopper, x - 0.5D, y, z - 0.5D, x + 0.5D, y + 1.5D, z + 0.5D, false);
+        }
         else
         {
             for (EntityItem entityitem : getCaptureItems(hopper.getWorld(), hopper.getXPos(), hopper.getYPos(), hopper.getZPos()))
@@ -832,4 +840,10 @@ public class TileEntityHopper extends TileEntityLockableLoot implements IHopper,
         this.pullSleeping = false;
         this.pushSleeping = false;
     }
+
+    // CARPET-optimizedTileEntities: Asleep if either action is
+    @Override
+    public boolean isSleeping(){
+        return this.pullSleeping || this.pushSleeping;
+    }
 }
\ No newline at end of file
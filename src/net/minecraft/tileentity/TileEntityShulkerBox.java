@@ -29,6 +29,7 @@ import net.minecraft.util.datafix.walkers.ItemStackDataLists;
 import net.minecraft.util.math.AxisAlignedBB;
 
 import carpet.CarpetSettings;
+import carpet.helpers.TileEntityOptimizer;
 import carpet.helpers.TileEntityOptimizer.ILazyTileEntity;
 
 public class TileEntityShulkerBox extends TileEntityLockableLoot implements ITickable, ISidedInventory, ILazyTileEntity
@@ -229,7 +230,7 @@ public class TileEntityShulkerBox extends TileEntityLockableLoot implements ITic
     public boolean receiveClientEvent(int id, int type)
     {
         // CARPET-optimizedTileEntities: Skip the update if sleeping
-    	this.isSleeping = false;
+    	TileEntityOptimizer.wakeUp(this.world, this, TileEntityOptimizer.WakeUpCause.BLOCK_EVENT);
 
         if (id == 1)
         {
@@ -493,4 +494,9 @@ public class TileEntityShulkerBox extends TileEntityLockableLoot implements ITic
     public void wakeUp(){
     	this.isSleeping = false;
     }
+
+    @Override
+    public boolean isSleeping(){
+    	return this.isSleeping;
+    }
 }
\ No newline at end of file
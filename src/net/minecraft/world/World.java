@@ -78,6 +78,8 @@ public abstract class World implements IBlockAccess
     /** A list of all Entities in all currently-loaded chunks */
     public final List<Entity> loadedEntityList = Lists.<Entity>newArrayList();
     protected final List<Entity> unloadedEntityList = Lists.<Entity>newArrayList();
+    /** CM: mob cap counts of loadedEntityList */
+    public final CreatureCounts creatureCounts = new CreatureCounts();
     /** A list of the loaded tile entities in the world */
     public final List<TileEntity> loadedTileEntityList = Lists.<TileEntity>newArrayList();
     public final List<TileEntity> tickableTileEntities = Lists.<TileEntity>newArrayList();
@@ -1294,6 +1296,8 @@ public abstract class World implements IBlockAccess
 
     protected void onEntityAdded(Entity entityIn)
     {
+        this.creatureCounts.onEntityAdded(entityIn);
+
         for (int i = 0; i < this.eventListeners.size(); ++i)
         {
             ((IWorldEventListener)this.eventListeners.get(i)).onEntityAdded(entityIn);
@@ -1302,6 +1306,8 @@ public abstract class World implements IBlockAccess
 
     protected void onEntityRemoved(Entity entityIn)
     {
+        this.creatureCounts.onEntityRemoved(entityIn);
+
         for (int i = 0; i < this.eventListeners.size(); ++i)
         {
             ((IWorldEventListener)this.eventListeners.get(i)).onEntityRemoved(entityIn);
@@ -1404,7 +1410,8 @@ public abstract class World implements IBlockAccess
      */
     private boolean getCollisionBoxes(@Nullable Entity entityIn, AxisAlignedBB aabb, boolean p_191504_3_, @Nullable List<AxisAlignedBB> outList)
     {
-        if (CarpetSettings.blockCollisionsOptimization) { // CARPET-MASA
+        // CM: the debug world has no block storages for the cached collision shapes
+        if (CarpetSettings.blockCollisionsOptimization && this.worldInfo.getTerrainType() != WorldType.DEBUG_ALL_BLOCK_STATES) { // CARPET-MASA
             return CollisionBoxesOptimizations.optimizedGetCollisionBoxes(this, entityIn, aabb, p_191504_3_, outList);
         }
         int i = MathHelper.floor(aabb.minX) - 1;
@@ -1685,8 +1692,8 @@ public abstract class World implements IBlockAccess
             }
         }
         LagSpikeHelper.processLagSpikes(this, LagSpikeHelper.TickPhase.ENTITY, LagSpikeHelper.EntitySubPhase.POST_WEATHER);
-        String world_name = this.provider.getDimensionType().getName();
-        CarpetProfiler.start_section(world_name, "entities");
+        DimensionType dimension = this.provider.getDimensionType();
+        CarpetProfiler.start_section(dimension, CarpetProfiler.SECTION_ENTITIES);
 
         this.profiler.endStartSection("remove");
         this.loadedEntityList.removeAll(this.unloadedEntityList);
@@ -1717,7 +1724,7 @@ public abstract class World implements IBlockAccess
         for (int i1 = 0; i1 < this.loadedEntityList.size(); ++i1)
         {
             Entity entity2 = this.loadedEntityList.get(i1);
-            CarpetProfiler.start_entity_section(world_name, entity2);
+            CarpetProfiler.start_entity_section(dimension, entity2);
             Entity entity3 = entity2.getRidingEntity();
 
             if (entity3 != null)
@@ -1775,7 +1782,7 @@ public abstract class World implements IBlockAccess
         }
         LagSpikeHelper.processLagSpikes(this, LagSpikeHelper.TickPhase.ENTITY, LagSpikeHelper.EntitySubPhase.POST_NORMAL);
         CarpetProfiler.end_current_section();
-        CarpetProfiler.start_section(world_name, "tileentities");
+        CarpetProfiler.start_section(dimension, CarpetProfiler.SECTION_TILEENTITIES);
 
         this.profiler.endStartSection("blockEntities");
         WorldHelper.swapTickTask(TickTask.BLOCK_ENTITIES); // RSMM
@@ -1804,7 +1811,7 @@ public abstract class World implements IBlockAccess
         while (iterator.hasNext())
         {
             TileEntity tileentity = iterator.next();
-            CarpetProfiler.start_tileentity_section(world_name, tileentity);
+            CarpetProfiler.start_tileentity_section(dimension, tileentity);
 
             if (!tileentity.isInvalid() && tileentity.hasWorld())
             {
@@ -1,6 +1,11 @@
 package net.minecraft.world;
 
 import com.google.common.collect.Sets;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
@@ -20,9 +25,9 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.biome.Biome;
+import net.minecraft.world.border.WorldBorder;
 import net.minecraft.world.chunk.Chunk;
 
-import net.minecraft.entity.EntityList;
 import carpet.utils.SpawnReporter;
 import carpet.CarpetSettings;
 import java.lang.Math;
@@ -33,6 +38,20 @@ public final class WorldEntitySpawner
     private static final int MOB_COUNT_DIV = (int)Math.pow(17.0D, 2.0D);
     /** The 17x17 area around the player where mobs can spawn */
     private final Set<ChunkPos> eligibleChunksForSpawning = Sets.<ChunkPos>newHashSet();
+    /** CM: the eligible chunks as chunk indices, in the order they are tried */
+    private long[] eligibleChunks = new long[256];
+    private int eligibleChunkCount;
+    /** CM: chunks the players were in when the layout was built, with optimizedMobSpawning */
+    private long[] playerChunks = new long[0];
+    /** Every chunk in spawning range of a player, in the order the vanilla loop first reaches them */
+    private long[] layoutChunks = new long[0];
+    /** How often each chunk adds to the mob caps when it can spawn mobs, -1 if it's on the edge for every player */
+    private int[] layoutCountsIfEligible = new int[0];
+    /** How often each chunk adds to the mob caps when it can't */
+    private int[] layoutCounts = new int[0];
+    /** Chunks that can be eligible, in the order the vanilla loop first reaches them away from the edge */
+    private int[] layoutInsertionOrder = new int[0];
+    private boolean[] layoutEligible = new boolean[0];
 
     /**
      * adds all chunks within the spawn radius of the players to eligibleChunksForSpawning. pars: the world,
@@ -46,35 +65,44 @@ public final class WorldEntitySpawner
         }
         else
         {
-            this.eligibleChunksForSpawning.clear();
-            int i = 0;
+            int i;
 
-            for (EntityPlayer entityplayer : worldServerIn.playerEntities)
+            if (CarpetSettings.optimizedMobSpawning)
             {
-                if (!entityplayer.isSpectator())
-                {
-                    int j = MathHelper.floor(entityplayer.posX / 16.0D);
-                    int k = MathHelper.floor(entityplayer.posZ / 16.0D);
-                    int l = 8;
+                i = this.findEligibleChunks(worldServerIn);
+            }
+            else
+            {
+                this.eligibleChunksForSpawning.clear();
+                i = 0;
 
-                    for (int i1 = -8; i1 <= 8; ++i1)
+                for (EntityPlayer entityplayer : worldServerIn.playerEntities)
+                {
+                    if (!entityplayer.isSpectator())
                     {
-                        for (int j1 = -8; j1 <= 8; ++j1)
-                        {
-                            boolean flag = i1 == -8 || i1 == 8 || j1 == -8 || j1 == 8;
-                            ChunkPos chunkpos = new ChunkPos(i1 + j, j1 + k);
+                        int j = MathHelper.floor(entityplayer.posX / 16.0D);
+                        int k = MathHelper.floor(entityplayer.posZ / 16.0D);
+                        int l = 8;
 
-                            if (!this.eligibleChunksForSpawning.contains(chunkpos))
+                        for (int i1 = -8; i1 <= 8; ++i1)
+                        {
+                            for (int j1 = -8; j1 <= 8; ++j1)
                             {
-                                ++i;
+                                boolean flag = i1 == -8 || i1 == 8 || j1 == -8 || j1 == 8;
+                                ChunkPos chunkpos = new ChunkPos(i1 + j, j1 + k);
 
-                                if (!flag && worldServerIn.getWorldBorder().contains(chunkpos))
+                                if (!this.eligibleChunksForSpawning.contains(chunkpos))
                                 {
-                                    PlayerChunkMapEntry playerchunkmapentry = worldServerIn.getPlayerChunkMap().getEntry(chunkpos.x, chunkpos.z);
+                                    ++i;
 
-                                    if (playerchunkmapentry != null && playerchunkmapentry.isSentToPlayers())
+                                    if (!flag && worldServerIn.getWorldBorder().contains(chunkpos))
                                     {
-                                        this.eligibleChunksForSpawning.add(chunkpos);
+                                        PlayerChunkMapEntry playerchunkmapentry = worldServerIn.getPlayerChunkMap().getEntry(chunkpos.x, chunkpos.z);
+
+                                        if (playerchunkmapentry != null && playerchunkmapentry.isSentToPlayers())
+                                        {
+                                            this.eligibleChunksForSpawning.add(chunkpos);
+                                        }
                                     }
                                 }
                             }
@@ -83,6 +111,18 @@ public final class WorldEntitySpawner
                 }
             }
 
+            if (this.eligibleChunks.length < this.eligibleChunksForSpawning.size())
+            {
+                this.eligibleChunks = new long[this.eligibleChunksForSpawning.size()];
+            }
+
+            this.eligibleChunkCount = 0;
+
+            for (ChunkPos chunkpos : this.eligibleChunksForSpawning)
+            {
+                this.eligibleChunks[this.eligibleChunkCount++] = ChunkPos.asLong(chunkpos.x, chunkpos.z);
+            }
+
             //CM start
             boolean optimizedDespawnRange = CarpetSettings.optimizedDespawnRange;
             if (i==0 && optimizedDespawnRange) // worlds without valid chunks are skipped.
@@ -94,30 +134,29 @@ public final class WorldEntitySpawner
             BlockPos blockpos1 = worldServerIn.getSpawnPoint();
             //CM start
             int did = worldServerIn.provider.getDimensionType().getId();
-            String level_suffix = (did==0)?"":((did<0?" (N)":" (E)"));
+            int dim_index = SpawnReporter.dimension_index(did);
             //CM end
 
             for (EnumCreatureType enumcreaturetype : EnumCreatureType.values())
             {
                 //CM start
-                String type_code = String.format("%s", enumcreaturetype);
-                String group_code = type_code+level_suffix;
+                int type_index = enumcreaturetype.ordinal();
                 if (SpawnReporter.track_spawns > 0L)
                 {
-                    SpawnReporter.overall_spawn_ticks.put(group_code, SpawnReporter.overall_spawn_ticks.get(group_code) + SpawnReporter.spawn_tries.get(type_code));
+                    SpawnReporter.overall_spawn_ticks[dim_index][type_index] += SpawnReporter.spawn_tries[type_index];
                 }
                 //CM end
                 if ((!enumcreaturetype.getPeacefulCreature() || spawnPeacefulMobs) && (enumcreaturetype.getPeacefulCreature() || spawnHostileMobs) && (!enumcreaturetype.getAnimal() || spawnOnSetTickRate))
                 {
-                    int k4 = worldServerIn.countEntities(enumcreaturetype.getCreatureClass());
+                    int k4 = CarpetSettings.optimizedMobSpawning ? worldServerIn.creatureCounts.get(enumcreaturetype) : worldServerIn.countEntities(enumcreaturetype.getCreatureClass());
                     //CM replaced: //int l4 = enumcreaturetype.getMaxNumberOfCreature() * i / MOB_COUNT_DIV;
                     int l4 = (int)(Math.pow(2.0,(SpawnReporter.mobcap_exponent/4)) * enumcreaturetype.getMaxNumberOfCreature() * i / MOB_COUNT_DIV);
                     SpawnReporter.mobcaps.get(did).put(enumcreaturetype, new Tuple<>(k4, l4));
-                    int tries = SpawnReporter.spawn_tries.get(type_code);
+                    int tries = SpawnReporter.spawn_tries[type_index];
                     if (SpawnReporter.track_spawns > 0L)
                     {
-                        SpawnReporter.spawn_attempts.put(group_code, SpawnReporter.spawn_attempts.get(group_code) + tries);
-                        SpawnReporter.spawn_cap_count.put(group_code, SpawnReporter.spawn_cap_count.get(group_code) + k4);
+                        SpawnReporter.spawn_attempts[dim_index][type_index] += tries;
+                        SpawnReporter.spawn_cap_count[dim_index][type_index] += k4;
                     }
                     if (SpawnReporter.mock_spawns) { k4 = 0; } // no mobcaps
                     //CM end
@@ -133,9 +172,10 @@ public final class WorldEntitySpawner
                         
                         label134:
 
-                        for (ChunkPos chunkpos1 : this.eligibleChunksForSpawning)
+                        for (int c = 0; c < this.eligibleChunkCount; ++c)
                         {
-                            BlockPos blockpos = getRandomChunkPosition(worldServerIn, chunkpos1.x, chunkpos1.z);
+                            long chunkpos1 = this.eligibleChunks[c];
+                            BlockPos blockpos = getRandomChunkPosition(worldServerIn, (int)chunkpos1, (int)(chunkpos1 >>> 32));
                             int k1 = blockpos.getX();
                             int l1 = blockpos.getY();
                             int i2 = blockpos.getZ();
@@ -211,8 +251,7 @@ public final class WorldEntitySpawner
                                                             ++local_spawns;
                                                             if (SpawnReporter.track_spawns > 0L)
                                                             {
-                                                                String species = EntityList.getEntityString(entityliving);
-                                                                SpawnReporter.registerSpawn(entityliving, type_code, species, blockpos$mutableblockpos);
+                                                                SpawnReporter.registerSpawn(entityliving, enumcreaturetype, blockpos$mutableblockpos);
                                                             }
                                                             if (SpawnReporter.mock_spawns)
                                                             {
@@ -249,12 +288,12 @@ public final class WorldEntitySpawner
                         {
                             if (local_spawns > 0)
                             {
-                                SpawnReporter.spawn_ticks_succ.put(group_code, SpawnReporter.spawn_ticks_succ.get(group_code) + 1L);
-                                SpawnReporter.spawn_ticks_spawns.put(group_code, SpawnReporter.spawn_ticks_spawns.get(group_code) + local_spawns);
+                                SpawnReporter.spawn_ticks_succ[dim_index][type_index] += 1L;
+                                SpawnReporter.spawn_ticks_spawns[dim_index][type_index] += local_spawns;
                             }
                             else
                             {
-                                SpawnReporter.spawn_ticks_fail.put(group_code, SpawnReporter.spawn_ticks_fail.get(group_code) + 1L);
+                                SpawnReporter.spawn_ticks_fail[dim_index][type_index] += 1L;
                             }
                         }
                       } //carpet mod <- extra indentation
@@ -263,7 +302,7 @@ public final class WorldEntitySpawner
                     {
                         if (SpawnReporter.track_spawns > 0L)
                         {
-                            SpawnReporter.spawn_ticks_full.put(group_code, SpawnReporter.spawn_ticks_full.get(group_code) + SpawnReporter.spawn_tries.get(type_code));
+                            SpawnReporter.spawn_ticks_full[dim_index][type_index] += SpawnReporter.spawn_tries[type_index];
                         }
                     }
                     /* end */
@@ -274,6 +313,117 @@ public final class WorldEntitySpawner
         }
     }
 
+    /**
+     * CM: same result as the vanilla loop over the players, with the chunks around them only looked up again once a player
+     * moved to another chunk. Chunks are counted once per player they are in range of, until one of those players
+     * makes them eligible. The eligible chunks go into eligibleChunksForSpawning in the order vanilla adds them,
+     * so the set iterates in the same order and spawns stay the same for the same seed.
+     */
+    private int findEligibleChunks(WorldServer worldServerIn)
+    {
+        this.updateLayout(worldServerIn.playerEntities);
+        this.eligibleChunksForSpawning.clear();
+        int i = 0;
+        WorldBorder worldborder = worldServerIn.getWorldBorder();
+
+        for (int n = 0; n < this.layoutInsertionOrder.length; ++n)
+        {
+            int c = this.layoutInsertionOrder[n];
+            long key = this.layoutChunks[c];
+            int x = (int)key;
+            int z = (int)(key >>> 32);
+            boolean eligible = false;
+
+            if ((double)((x << 4) + 15) > worldborder.minX() && (double)(x << 4) < worldborder.maxX() && (double)((z << 4) + 15) > worldborder.minZ() && (double)(z << 4) < worldborder.maxZ())
+            {
+                PlayerChunkMapEntry playerchunkmapentry = worldServerIn.getPlayerChunkMap().getEntry(x, z);
+                eligible = playerchunkmapentry != null && playerchunkmapentry.isSentToPlayers();
+            }
+
+            if (eligible)
+            {
+                this.layoutEligible[c] = true;
+                this.eligibleChunksForSpawning.add(new ChunkPos(x, z));
+            }
+        }
+
+        for (int c = 0; c < this.layoutChunks.length; ++c)
+        {
+            i += this.layoutEligible[c] ? this.layoutCountsIfEligible[c] : this.layoutCounts[c];
+            this.layoutEligible[c] = false;
+        }
+
+        return i;
+    }
+
+    private void updateLayout(List<EntityPlayer> players)
+    {
+        LongArrayList playerchunks = new LongArrayList(players.size());
+
+        for (EntityPlayer entityplayer : players)
+        {
+            if (!entityplayer.isSpectator())
+            {
+                playerchunks.add(ChunkPos.asLong(MathHelper.floor(entityplayer.posX / 16.0D), MathHelper.floor(entityplayer.posZ / 16.0D)));
+            }
+        }
+
+        long[] chunks = playerchunks.toLongArray();
+
+        if (Arrays.equals(chunks, this.playerChunks))
+        {
+            return;
+        }
+
+        this.playerChunks = chunks;
+        Long2IntMap indices = new Long2IntOpenHashMap();
+        indices.defaultReturnValue(-1);
+        LongArrayList layoutchunks = new LongArrayList();
+        IntArrayList countsifeligible = new IntArrayList();
+        IntArrayList counts = new IntArrayList();
+        IntArrayList insertionorder = new IntArrayList();
+
+        for (long playerchunk : chunks)
+        {
+            int j = (int)playerchunk;
+            int k = (int)(playerchunk >>> 32);
+
+            for (int i1 = -8; i1 <= 8; ++i1)
+            {
+                for (int j1 = -8; j1 <= 8; ++j1)
+                {
+                    boolean flag = i1 == -8 || i1 == 8 || j1 == -8 || j1 == 8;
+                    long key = ChunkPos.asLong(i1 + j, j1 + k);
+                    int index = indices.get(key);
+
+                    if (index < 0)
+                    {
+                        index = layoutchunks.size();
+                        indices.put(key, index);
+                        layoutchunks.add(key);
+                        countsifeligible.add(-1);
+                        counts.add(0);
+                    }
+
+                    int count = counts.getInt(index) + 1;
+                    counts.set(index, count);
+
+                    if (!flag && countsifeligible.getInt(index) < 0)
+                    {
+                        countsifeligible.set(index, count);
+                        insertionorder.add(index);
+                    }
+                }
+            }
+        }
+
+        this.layoutChunks = layoutchunks.toLongArray();
+        this.layoutCountsIfEligible = countsifeligible.toIntArray();
+        this.layoutCounts = counts.toIntArray();
+        this.layoutInsertionOrder = insertionorder.toIntArray();
+        this.layoutEligible = new boolean[this.layoutChunks.length];
+    }
+
     private static BlockPos getRandomChunkPosition(World worldIn, int x, int z)
     {
         Chunk chunk = worldIn.getChunk(x, z);
@@ -1,6 +1,8 @@
 package net.minecraft.world;
 
 import carpet.helpers.NextTickListEntryFix;
+import carpet.helpers.TileTickChunkIndex;
+import carpet.helpers.TileTickScheduler;
 import carpet.helpers.ScheduledBlockEventSerializer;
 import carpet.logging.logHelpers.ExplosionLogHelper;
 import com.google.common.collect.Lists;
@@ -10,6 +12,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -123,6 +126,10 @@ public class WorldServer extends World implements IThreadListener
     private final WorldServer.ServerBlockEventList[] blockEventQueue = new WorldServer.ServerBlockEventList[] {new WorldServer.ServerBlockEventList(), new WorldServer.ServerBlockEventList()};
     private int blockEventCacheIndex;
     private final List<NextTickListEntry> pendingTickListEntriesThisTick = Lists.<NextTickListEntry>newArrayList();
+    // CM: replaces the two sets above while bucketedTileTicks is enabled, null otherwise
+    private TileTickScheduler bucketedTileTicks;
+    // CM: chunk index of pendingTickListEntriesTreeSet, used for chunk saving and unloading
+    private final TileTickChunkIndex pendingTickListEntriesByChunk = new TileTickChunkIndex();
 
     // Carpet waypoints
     public Map<String, Waypoint> waypoints;
@@ -240,13 +247,13 @@ public class WorldServer extends World implements IThreadListener
             this.wakeAllPlayers();
         }
 
-        String world_name = this.provider.getDimensionType().getName();
+        DimensionType dimension = this.provider.getDimensionType();
         if (TickSpeed.process_entities)
         {// extra indent
 
         this.profiler.startSection("mobSpawner");
         WorldHelper.startTickTask(TickTask.MOB_SPAWNING); // RSMM
-        CarpetProfiler.start_section(world_name, "spawning");
+        CarpetProfiler.start_section(dimension, CarpetProfiler.SECTION_SPAWNING);
 
         LagSpikeHelper.processLagSpikes(this, LagSpikeHelper.TickPhase.MOB_SPAWNING, LagSpikeHelper.PrePostSubPhase.PRE);
         if (this.getGameRules().getBoolean("doMobSpawning") && this.worldInfo.getTerrainType() != WorldType.DEBUG_ALL_BLOCK_STATES)
@@ -297,7 +304,7 @@ public class WorldServer extends World implements IThreadListener
         this.profiler.endStartSection("tickPending");
         WorldHelper.startTickTask(TickTask.SCHEDULED_TICKS); // RSMM
 
-        CarpetProfiler.start_section(world_name, "blocks");
+        CarpetProfiler.start_section(dimension, CarpetProfiler.SECTION_BLOCKS);
 
         LagSpikeHelper.processLagSpikes(this, LagSpikeHelper.TickPhase.TILE_TICK, LagSpikeHelper.PrePostSubPhase.PRE);
 		this.tickUpdates(false);
@@ -316,7 +323,7 @@ public class WorldServer extends World implements IThreadListener
 		WorldHelper.endTickTask(); // RSMM
 		
 		} //end indent
-		CarpetProfiler.start_section(world_name, "blocks");
+		CarpetProfiler.start_section(dimension, CarpetProfiler.SECTION_BLOCKS);
         this.profiler.endStartSection("tickBlocks");
         WorldHelper.startTickTask(TickTask.TICK_CHUNKS); // RSMM
         LagSpikeHelper.processLagSpikes(this, LagSpikeHelper.TickPhase.RANDOM_TICK, LagSpikeHelper.PrePostSubPhase.PRE);
@@ -524,11 +531,10 @@ public class WorldServer extends World implements IThreadListener
 
         if (this.worldInfo.getTerrainType() == WorldType.DEBUG_ALL_BLOCK_STATES)
         {
-            Iterator<Chunk> iterator1 = this.playerChunkMap.getChunkIterator();
-
-            while (iterator1.hasNext())
+            // CM: index loop over the entries instead of getChunkIterator
+            for (int c = this.playerChunkMap.getNextTickableEntry(0); c >= 0; c = this.playerChunkMap.getNextTickableEntry(c + 1))
             {
-                ((Chunk)iterator1.next()).onTick(false);
+                this.playerChunkMap.getEntryChunk(c).onTick(false);
             }
         }
         else
@@ -539,10 +545,11 @@ public class WorldServer extends World implements IThreadListener
             this.profiler.startSection("pollingChunks");
             boolean overworldIceOnly = !CarpetSettings.enableStableLCGNetherEnd || provider.getDimensionType().getId() == 0; // Rule to disable nether and end ice snow and lightning Carpet-XCOM
 
-            for (Iterator<Chunk> iterator = this.playerChunkMap.getChunkIterator(); iterator.hasNext(); this.profiler.endSection())
+            // CM: index loop over the entries instead of getChunkIterator
+            for (int c = this.playerChunkMap.getNextTickableEntry(0); c >= 0; c = this.playerChunkMap.getNextTickableEntry(c + 1), this.profiler.endSection())
             {
                 this.profiler.startSection("getChunk");
-                Chunk chunk = iterator.next();
+                Chunk chunk = this.playerChunkMap.getEntryChunk(c);
                 int j = chunk.x * 16;
                 int k = chunk.z * 16;
                 this.profiler.endStartSection("checkNextLight");
@@ -708,9 +715,72 @@ public class WorldServer extends World implements IThreadListener
         }else{
             nextticklistentry = new NextTickListEntryFix(pos, blk);
         }
+        if (this.useBucketedTileTicks())
+        {
+            return this.bucketedTileTicks.contains(nextticklistentry);
+        }
         return this.pendingTickListEntriesHashSet.contains(nextticklistentry);
     }
 
+    /**
+     * Moves the scheduled tile ticks over when bucketedTileTicks was toggled since the last access
+     * @return Whether the bucketed scheduler is in use
+     */
+    private boolean useBucketedTileTicks()
+    {
+        boolean bucketed = CarpetSettings.bucketedTileTicks;
+        if (bucketed == (this.bucketedTileTicks != null))
+        {
+            return bucketed;
+        }
+        if (bucketed)
+        {
+            this.bucketedTileTicks = new TileTickScheduler();
+            for (NextTickListEntry nextticklistentry : this.pendingTickListEntriesTreeSet)
+            {
+                this.bucketedTileTicks.add(nextticklistentry);
+            }
+            this.pendingTickListEntriesTreeSet.clear();
+            this.pendingTickListEntriesHashSet.clear();
+            this.pendingTickListEntriesByChunk.clear();
+        }
+        else
+        {
+            for (NextTickListEntry nextticklistentry : this.bucketedTileTicks.toSortedList())
+            {
+                this.pendingTickListEntriesHashSet.add(nextticklistentry);
+                this.pendingTickListEntriesTreeSet.add(nextticklistentry);
+                this.pendingTickListEntriesByChunk.add(nextticklistentry);
+            }
+            this.bucketedTileTicks = null;
+        }
+        return bucketed;
+    }
+
+    /**
+     * Scheduled tile ticks in a chunk, in no particular order
+     */
+    public Collection<NextTickListEntry> getPendingTickEntries(int chunkX, int chunkZ)
+    {
+        if (this.useBucketedTileTicks())
+        {
+            return this.bucketedTileTicks.getChunk(chunkX, chunkZ);
+        }
+        return this.pendingTickListEntriesByChunk.get(chunkX, chunkZ);
+    }
+
+    /**
+     * All scheduled tile ticks in execution order, for debugging
+     */
+    public Collection<NextTickListEntry> getPendingTickEntries()
+    {
+        if (this.useBucketedTileTicks())
+        {
+            return this.bucketedTileTicks.toSortedList();
+        }
+        return this.pendingTickListEntriesTreeSet;
+    }
+
     public void scheduleUpdate(BlockPos pos, Block blockIn, int delay)
     {
         this.updateBlockTick(pos, blockIn, delay, 0);
@@ -762,10 +832,15 @@ public class WorldServer extends World implements IThreadListener
                 nextticklistentry.setPriority(priority);
             }
 
-            if (!this.pendingTickListEntriesHashSet.contains(nextticklistentry))
+            if (this.useBucketedTileTicks())
+            {
+                this.bucketedTileTicks.add(nextticklistentry);
+            }
+            else if (!this.pendingTickListEntriesHashSet.contains(nextticklistentry))
             {
                 this.pendingTickListEntriesHashSet.add(nextticklistentry);
                 this.pendingTickListEntriesTreeSet.add(nextticklistentry);
+                this.pendingTickListEntriesByChunk.add(nextticklistentry);
             }
         }
     }
@@ -790,10 +865,15 @@ public class WorldServer extends World implements IThreadListener
             nextticklistentry.setScheduledTime((long)delay + this.worldInfo.getWorldTotalTime());
         }
 
-        if (!this.pendingTickListEntriesHashSet.contains(nextticklistentry))
+        if (this.useBucketedTileTicks())
+        {
+            this.bucketedTileTicks.add(nextticklistentry);
+        }
+        else if (!this.pendingTickListEntriesHashSet.contains(nextticklistentry))
         {
             this.pendingTickListEntriesHashSet.add(nextticklistentry);
             this.pendingTickListEntriesTreeSet.add(nextticklistentry);
+            this.pendingTickListEntriesByChunk.add(nextticklistentry);
         }
     }
 
@@ -900,9 +980,10 @@ public class WorldServer extends World implements IThreadListener
         }
         else
         {
-            int i = this.pendingTickListEntriesTreeSet.size();
+            boolean bucketed = this.useBucketedTileTicks();
+            int i = bucketed ? this.bucketedTileTicks.size() : this.pendingTickListEntriesTreeSet.size();
 
-            if (i != this.pendingTickListEntriesHashSet.size())
+            if (!bucketed && i != this.pendingTickListEntriesHashSet.size())
             {
                 throw new IllegalStateException("TickNextTick list out of synch");
             }
@@ -926,15 +1007,23 @@ public class WorldServer extends World implements IThreadListener
 
                 for (int j = 0; j < i; ++j)
                 {
-                    NextTickListEntry nextticklistentry = this.pendingTickListEntriesTreeSet.first();
+                    NextTickListEntry nextticklistentry = bucketed ? this.bucketedTileTicks.first() : this.pendingTickListEntriesTreeSet.first();
 
                     if (!runAllPending && nextticklistentry.scheduledTime > this.worldInfo.getWorldTotalTime())
                     {
                         break;
                     }
 
-                    this.pendingTickListEntriesTreeSet.remove(nextticklistentry);
-                    this.pendingTickListEntriesHashSet.remove(nextticklistentry);
+                    if (bucketed)
+                    {
+                        this.bucketedTileTicks.pollFirst();
+                    }
+                    else
+                    {
+                        this.pendingTickListEntriesTreeSet.remove(nextticklistentry);
+                        this.pendingTickListEntriesHashSet.remove(nextticklistentry);
+                        this.pendingTickListEntriesByChunk.remove(nextticklistentry);
+                    }
                     this.pendingTickListEntriesThisTick.add(nextticklistentry);
                 }
 
@@ -956,6 +1045,7 @@ public class WorldServer extends World implements IThreadListener
 
                         if (iblockstate.getMaterial() != Material.AIR && Block.isEqualTo(iblockstate.getBlock(), nextticklistentry1.getBlock()))
                         {
+                            CarpetProfiler.start_block_section(this.provider.getDimensionType(), nextticklistentry1.position, CarpetProfiler.ATTRIBUTION_TILETICKS);
                             try
                             {
                                 WorldHelper.onScheduledTick(this, nextticklistentry1); // RSMM
@@ -968,6 +1058,7 @@ public class WorldServer extends World implements IThreadListener
                                 CrashReportCategory.addBlockInfo(crashreportcategory, nextticklistentry1.position, iblockstate);
                                 throw new ReportedException(crashreport);
                             }
+                            CarpetProfiler.end_block_section();
                         }
                     }
                     else
@@ -979,6 +1070,10 @@ public class WorldServer extends World implements IThreadListener
 
                 this.profiler.endSection();
                 this.pendingTickListEntriesThisTick.clear();
+                if (this.useBucketedTileTicks())
+                {
+                    return !this.bucketedTileTicks.isEmpty();
+                }
                 return !this.pendingTickListEntriesTreeSet.isEmpty();
             }
         }
@@ -999,44 +1094,55 @@ public class WorldServer extends World implements IThreadListener
     public List<NextTickListEntry> getPendingBlockUpdates(StructureBoundingBox structureBB, boolean remove)
     {
         List<NextTickListEntry> list = null;
+        List<NextTickListEntry> found = Lists.<NextTickListEntry>newArrayList();
 
-        for (int i = 0; i < 2; ++i)
+        // CM: future ticks come from the chunk index instead of walking the whole TreeSet
+        if (this.useBucketedTileTicks())
         {
-            Iterator<NextTickListEntry> iterator;
+            this.bucketedTileTicks.collect(structureBB, remove, found);
+        }
+        else
+        {
+            this.pendingTickListEntriesByChunk.collect(structureBB, found);
+            Collections.sort(found);
 
-            if (i == 0)
+            if (remove)
             {
-                iterator = this.pendingTickListEntriesTreeSet.iterator();
-            }
-            else
-            {
-                iterator = this.pendingTickListEntriesThisTick.iterator();
+                for (NextTickListEntry nextticklistentry : found)
+                {
+                    this.pendingTickListEntriesTreeSet.remove(nextticklistentry);
+                    this.pendingTickListEntriesHashSet.remove(nextticklistentry);
+                    this.pendingTickListEntriesByChunk.remove(nextticklistentry);
+                }
             }
+        }
 
-            while (iterator.hasNext())
-            {
-                NextTickListEntry nextticklistentry = iterator.next();
-                BlockPos blockpos = nextticklistentry.position;
+        if (!found.isEmpty())
+        {
+            list = found;
+        }
 
-                if (blockpos.getX() >= structureBB.minX && blockpos.getX() < structureBB.maxX && blockpos.getZ() >= structureBB.minZ && blockpos.getZ() < structureBB.maxZ)
-                {
-                    if (remove)
-                    {
-                        if (i == 0)
-                        {
-                            this.pendingTickListEntriesHashSet.remove(nextticklistentry);
-                        }
+        // ticks being processed this tick are only a handful, those are still scanned
+        Iterator<NextTickListEntry> iterator = this.pendingTickListEntriesThisTick.iterator();
 
-                        iterator.remove();
-                    }
+        while (iterator.hasNext())
+        {
+            NextTickListEntry nextticklistentry = iterator.next();
+            BlockPos blockpos = nextticklistentry.position;
 
-                    if (list == null)
-                    {
-                        list = Lists.<NextTickListEntry>newArrayList();
-                    }
+            if (blockpos.getX() >= structureBB.minX && blockpos.getX() < structureBB.maxX && blockpos.getZ() >= structureBB.minZ && blockpos.getZ() < structureBB.maxZ)
+            {
+                if (remove)
+                {
+                    iterator.remove();
+                }
 
-                    list.add(nextticklistentry);
+                if (list == null)
+                {
+                    list = Lists.<NextTickListEntry>newArrayList();
                 }
+
+                list.add(nextticklistentry);
             }
         }
 
@@ -1487,10 +1593,12 @@ public class WorldServer extends World implements IThreadListener
             {
                 if(carpet.carpetclient.CarpetClientChunkLogger.logger.enabled)
                     carpet.carpetclient.CarpetClientChunkLogger.setReason("Queued block event: " + blockeventdata);
+                CarpetProfiler.start_block_section(this.provider.getDimensionType(), blockeventdata.getPosition(), CarpetProfiler.ATTRIBUTION_BLOCKEVENTS);
                 if (this.fireBlockEvent(blockeventdata))
                 {
                     this.server.getPlayerList().sendToAllNearExcept((EntityPlayer)null, (double)blockeventdata.getPosition().getX(), (double)blockeventdata.getPosition().getY(), (double)blockeventdata.getPosition().getZ(), 64.0D, this.provider.getDimensionType().getId(), new SPacketBlockAction(blockeventdata.getPosition(), blockeventdata.getBlock(), blockeventdata.getEventID(), blockeventdata.getEventParameter()));
                 }
+                CarpetProfiler.end_block_section();
             }
             carpet.carpetclient.CarpetClientChunkLogger.resetReason();
 
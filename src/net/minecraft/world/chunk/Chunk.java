@@ -15,6 +15,7 @@ import net.minecraft.crash.CrashReport;
 import net.minecraft.crash.CrashReportCategory;
 import net.minecraft.crash.ICrashReportDetail;
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.item.EntityItem;
 import net.minecraft.init.Biomes;
 import net.minecraft.init.Blocks;
 import net.minecraft.tileentity.TileEntity;
@@ -73,6 +74,9 @@ public class Chunk
     private final Map<BlockPos, TileEntity> tileEntities;
     /** Array of Lists containing the entities in this Chunk. Each List represents a 16 block subchunk. */
     private final ClassInheritanceMultiMap<Entity>[] entityLists;
+    /** CM: the items of each section in the same order as in entityLists, for hoppers to capture from */
+    private final List<EntityItem>[] itemLists;
+    private int itemCount;
     /** Boolean value indicating if the terrain is populated. */
     private boolean isTerrainPopulated;
     private boolean isLightPopulated;
@@ -107,6 +111,7 @@ public class Chunk
         this.queuedLightChecks = 4096;
         this.tileEntityPosQueue = Queues.<BlockPos>newConcurrentLinkedQueue();
         this.entityLists = (ClassInheritanceMultiMap[])(new ClassInheritanceMultiMap[16]);
+        this.itemLists = (List[])(new List[16]);
         this.world = worldIn;
         this.x = x;
         this.z = z;
@@ -115,6 +120,7 @@ public class Chunk
         for (int i = 0; i < this.entityLists.length; ++i)
         {
             this.entityLists[i] = new ClassInheritanceMultiMap(Entity.class);
+            this.itemLists[i] = new ArrayList<EntityItem>();
         }
 
         Arrays.fill(this.precipitationHeightMap, -999);
@@ -714,7 +720,7 @@ public class Chunk
 
     public int getLightFor(EnumSkyBlock type, BlockPos pos)
     {
-    	if (CarpetSettings.newLight) this.world.lightingEngine.procLightUpdates(type);
+    	if (CarpetSettings.newLight) this.world.lightingEngine.procLightUpdates(type, pos);
         int i = pos.getX() & 15;
         int j = pos.getY();
         int k = pos.getZ() & 15;
@@ -770,7 +776,7 @@ public class Chunk
 
     public int getLightSubtracted(BlockPos pos, int amount)
     {
-    	if (CarpetSettings.newLight) this.world.lightingEngine.procLightUpdates();
+    	if (CarpetSettings.newLight) this.world.lightingEngine.procLightUpdates(pos);
         int i = pos.getX() & 15;
         int j = pos.getY();
         int k = pos.getZ() & 15;
@@ -827,6 +833,12 @@ public class Chunk
         entityIn.chunkCoordY = k;
         entityIn.chunkCoordZ = this.z;
         this.entityLists[k].add(entityIn);
+
+        if (entityIn instanceof EntityItem)
+        {
+            this.itemLists[k].add((EntityItem)entityIn);
+            ++this.itemCount;
+        }
     }
 
     /**
@@ -853,6 +865,11 @@ public class Chunk
         }
 
         this.entityLists[index].remove(entityIn);
+
+        if (entityIn instanceof EntityItem && this.itemLists[index].remove(entityIn))
+        {
+            --this.itemCount;
+        }
     }
 
     public boolean canSeeSky(BlockPos pos)
@@ -1539,6 +1556,19 @@ public class Chunk
         return this.entityLists;
     }
 
+    /**
+     * CM: the items in the section, in the order getEntitiesOfTypeWithinAABB finds them
+     */
+    public List<EntityItem> getItemsInSection(int index)
+    {
+        return this.itemLists[index];
+    }
+
+    public int getItemCount()
+    {
+        return this.itemCount;
+    }
+
     public boolean isTerrainPopulated()
     {
         return this.isTerrainPopulated;
@@ -1,14 +1,19 @@
 package net.minecraft.world.chunk.storage;
 
 import com.google.common.collect.Maps; //CM unused import
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections; //CM unused import
 import java.util.List;
 import java.util.Map;
 import java.util.Set; //CM unused import
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import javax.annotation.Nullable;
 import net.minecraft.block.Block;
 import net.minecraft.entity.Entity;
@@ -37,6 +42,7 @@ import org.apache.logging.log4j.Logger;
 import java.util.HashMap;
 import java.util.Iterator;
 import carpet.CarpetSettings;
+import carpet.helpers.ChunkSavePipeline;
 
 public class AnvilChunkLoader implements IChunkLoader, IThreadedFileIO
 {
@@ -54,19 +60,31 @@ public class AnvilChunkLoader implements IChunkLoader, IThreadedFileIO
     // Insert new chunk into pending queue, replacing any older one at the same position
     synchronized private void queueChunkToRemove(ChunkPos pos, NBTTagCompound data)
     {
-        chunksToSave.put(pos, data);
+        ChunkSavePipeline.onQueued(chunksToSave.put(pos, data) != null);
     }
     // Fetch another chunk to save to disk and atomically move it into
     // the queue of chunk(s) being written.
+    // CM: chunks already being written by another thread are skipped, so two saves of the same chunk can't finish out of order
     synchronized private Map.Entry<ChunkPos, NBTTagCompound> fetchChunkToWrite()
     {
         if (chunksToSave.isEmpty()) return null;
         Iterator<Map.Entry<ChunkPos, NBTTagCompound>> iter =
                 chunksToSave.entrySet().iterator();
-        Map.Entry<ChunkPos, NBTTagCompound> entry = iter.next();
-        iter.remove();
-        chunksInWrite.put(entry.getKey(), entry.getValue());
-        return entry;
+        while (iter.hasNext())
+        {
+            Map.Entry<ChunkPos, NBTTagCompound> entry = iter.next();
+            if (chunksInWrite.containsKey(entry.getKey())) continue;
+            iter.remove();
+            chunksInWrite.put(entry.getKey(), entry.getValue());
+            ChunkSavePipeline.onFetched();
+            return entry;
+        }
+        return null;
+    }
+
+    synchronized private boolean hasChunksToSave()
+    {
+        return !chunksToSave.isEmpty();
     }
 
     // Once the write for a chunk is completely committed to disk,
@@ -219,6 +237,10 @@ public class AnvilChunkLoader implements IChunkLoader, IThreadedFileIO
      */
     public boolean writeNextIO()
     {
+        if (ChunkSavePipeline.isEnabled())
+        {
+            return this.writeNextBatch();
+        }
 /*        if (this.chunksToRemove.isEmpty())
         {
             if (this.savingExtraData)
@@ -236,6 +258,8 @@ public class AnvilChunkLoader implements IChunkLoader, IThreadedFileIO
 
             Map.Entry<ChunkPos, NBTTagCompound> entry = fetchChunkToWrite();
             if (entry == null) {
+                // CM: the remaining chunks are being written by another thread, try again once they are done
+                if (hasChunksToSave()) return true;
                 // If none left, here's code for some message that will never
                 // be executed since there is no "extra data."
                 if (this.flushing)
@@ -290,6 +314,85 @@ public class AnvilChunkLoader implements IChunkLoader, IThreadedFileIO
         dataoutputstream.close();
     }
 
+    /**
+     * CM: chunkSaveThreads pipeline step. Hands up to a batch of queued chunks to the workers to be encoded and
+     * compressed, then writes the results to the region files in order on the calling thread.
+     */
+    private boolean writeNextBatch()
+    {
+        List<Map.Entry<ChunkPos, NBTTagCompound>> batch = new ArrayList<Map.Entry<ChunkPos, NBTTagCompound>>(ChunkSavePipeline.BATCH_SIZE);
+        List<Future<AnvilChunkLoader.EncodedChunk>> encoded = new ArrayList<Future<AnvilChunkLoader.EncodedChunk>>(ChunkSavePipeline.BATCH_SIZE);
+        ExecutorService workers = ChunkSavePipeline.getWorkers();
+
+        while (batch.size() < ChunkSavePipeline.BATCH_SIZE)
+        {
+            Map.Entry<ChunkPos, NBTTagCompound> entry = fetchChunkToWrite();
+            if (entry == null) break;
+            NBTTagCompound compound = entry.getValue();
+            batch.add(entry);
+            encoded.add(workers.submit(() -> encodeChunk(compound)));
+        }
+
+        if (batch.isEmpty())
+        {
+            return hasChunksToSave();
+        }
+
+        for (int i = 0; i < batch.size(); ++i)
+        {
+            ChunkPos chunkpos = batch.get(i).getKey();
+
+            try
+            {
+                AnvilChunkLoader.EncodedChunk data = encoded.get(i).get();
+                data.writeTo(RegionFileCache.createOrLoadRegionFile(this.chunkSaveLocation, chunkpos.x, chunkpos.z), chunkpos.x & 31, chunkpos.z & 31);
+                ChunkSavePipeline.onWritten(data.size());
+            }
+            catch (InterruptedException interruptedexception)
+            {
+                Thread.currentThread().interrupt();
+                LOGGER.error("Interrupted while saving chunk", (Throwable)interruptedexception);
+            }
+            catch (Exception exception)
+            {
+                LOGGER.error("Failed to save chunk", (Throwable)exception);
+            }
+
+            retireChunkToWrite(chunkpos, batch.get(i).getValue());
+        }
+
+        return true;
+    }
+
+    private static AnvilChunkLoader.EncodedChunk encodeChunk(NBTTagCompound compound) throws IOException
+    {
+        RegionFileCodec codec = RegionFileCodec.forWriting();
+        AnvilChunkLoader.EncodedChunk data = new AnvilChunkLoader.EncodedChunk(codec);
+        DataOutputStream dataoutputstream = new DataOutputStream(new BufferedOutputStream(codec.wrap(data)));
+        CompressedStreamTools.write(compound, dataoutputstream);
+        dataoutputstream.close();
+        return data;
+    }
+
+    /**
+     * CM: compressed chunk, in the same format RegionFile.getChunkDataOutputStream writes
+     */
+    static class EncodedChunk extends ByteArrayOutputStream
+    {
+        private final RegionFileCodec codec;
+
+        private EncodedChunk(RegionFileCodec codec)
+        {
+            super(8192);
+            this.codec = codec;
+        }
+
+        void writeTo(RegionFile regionfile, int x, int z)
+        {
+            regionfile.write(x, z, this.buf, this.count, this.codec);
+        }
+    }
+
     /**
      * Save extra data associated with this Chunk not normally saved during autosave, only during chunk unload.
      * Currently unused.
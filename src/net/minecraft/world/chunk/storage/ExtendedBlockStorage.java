@@ -6,6 +6,8 @@ import net.minecraft.init.Blocks;
 import net.minecraft.world.chunk.BlockStateContainer;
 import net.minecraft.world.chunk.NibbleArray;
 
+import java.util.Arrays;
+
 import carpet.CarpetSettings;
 
 public class ExtendedBlockStorage
@@ -29,6 +31,13 @@ public class ExtendedBlockStorage
      * net.minecraft.world.WorldProvider#hasSkylight have skylight}.
      */
     private NibbleArray skyLight;
+    /** CM: bumped on every change of blocks or light, lets chunk packets be reused while it stays the same */
+    private int modificationCount;
+    /**
+     * CM: collision shape of every block, 2 bits each, in columns of 16 blocks so one column is half a long.
+     * Filled in lazily by CollisionBoxesOptimizations, a block goes back to unknown when it is set.
+     */
+    private long[] collisionShapes;
 
     public ExtendedBlockStorage(int y, boolean storeSkylight)
     {
@@ -49,6 +58,14 @@ public class ExtendedBlockStorage
 
     public void set(int x, int y, int z, IBlockState state)
     {
+        ++this.modificationCount;
+
+        if (this.collisionShapes != null)
+        {
+            int i = getCollisionShapeIndex(x, y, z);
+            this.collisionShapes[i >> 6] |= 3L << (i & 63);
+        }
+
         IBlockState iblockstate = this.get(x, y, z);
         Block block = iblockstate.getBlock();
         Block block1 = state.getBlock();
@@ -111,6 +128,7 @@ public class ExtendedBlockStorage
      */
     public void setSkyLight(int x, int y, int z, int value)
     {
+        ++this.modificationCount;
         this.skyLight.set(x, y, z, value);
     }
 
@@ -127,6 +145,7 @@ public class ExtendedBlockStorage
      */
     public void setBlockLight(int x, int y, int z, int value)
     {
+        ++this.modificationCount;
         this.blockLight.set(x, y, z, value);
     }
 
@@ -140,6 +159,7 @@ public class ExtendedBlockStorage
 
     public void recalculateRefCounts()
     {
+        this.collisionShapes = null;
         this.blockRefCount = 0;
         this.tickRefCount = 0;
 
@@ -191,6 +211,7 @@ public class ExtendedBlockStorage
      */
     public void setBlockLight(NibbleArray newBlocklightArray)
     {
+        ++this.modificationCount;
         this.blockLight = newBlocklightArray;
     }
 
@@ -199,10 +220,45 @@ public class ExtendedBlockStorage
      */
     public void setSkyLight(NibbleArray newSkylightArray)
     {
+        ++this.modificationCount;
         this.skyLight = newSkylightArray;
     }
 
     public BlockStateContainer getBlockStateContainer() {
         return data;
     }
-}
\ No newline at end of file
+
+    public int getModificationCount()
+    {
+        return this.modificationCount;
+    }
+
+    /**
+     * CM: collision shapes of the column at x, z, 2 bits per block starting with the lowest one
+     */
+    public int getCollisionShapes(int x, int z)
+    {
+        if (this.collisionShapes == null)
+        {
+            this.collisionShapes = new long[128];
+            Arrays.fill(this.collisionShapes, -1L);
+        }
+
+        int i = getCollisionShapeIndex(x, 0, z);
+        return (int)(this.collisionShapes[i >> 6] >>> (i & 63));
+    }
+
+    /**
+     * CM: only to be called after getCollisionShapes for the same column
+     */
+    public void setCollisionShape(int x, int y, int z, int shape)
+    {
+        int i = getCollisionShapeIndex(x, y, z);
+        this.collisionShapes[i >> 6] = this.collisionShapes[i >> 6] & ~(3L << (i & 63)) | (long)shape << (i & 63);
+    }
+
+    private static int getCollisionShapeIndex(int x, int y, int z)
+    {
+        return (x << 4 | z) << 5 | y << 1;
+    }
+}
@@ -0,0 +1,317 @@
+package net.minecraft.world.chunk.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.Nullable;
+import net.minecraft.server.MinecraftServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * CM: Region file backend using NIO, enabled with the nioRegionFiles rule.
+ * The 8KiB offset and timestamp header is memory mapped, chunk data is read and written with positional
+ * FileChannel calls, free sectors are tracked in a BitSet and each file has its own read/write lock
+ * so chunks of the same region can be read concurrently.
+ * The on-disk format is the same as {@link RegionFile}.
+ */
+public class MappedRegionFile extends RegionFile
+{
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final int SECTOR_BYTES = 4096;
+    private static final int HEADER_BYTES = 2 * SECTOR_BYTES;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final IntBuffer offsets;
+    private final IntBuffer chunkTimestamps;
+    /** set bits are sectors in use */
+    private final BitSet usedSectors = new BitSet();
+    private int sectorCount;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public MappedRegionFile(File fileNameIn) throws IOException
+    {
+        super(fileNameIn, false);
+        this.channel = FileChannel.open(fileNameIn.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try
+        {
+            long length = this.channel.size();
+
+            if (length < HEADER_BYTES)
+            {
+                this.channel.write(ByteBuffer.allocate((int)(HEADER_BYTES - length)), length);
+                length = HEADER_BYTES;
+            }
+
+            if ((length & (SECTOR_BYTES - 1)) != 0L)
+            {
+                long padded = (length | (SECTOR_BYTES - 1)) + 1;
+                this.channel.write(ByteBuffer.allocate((int)(padded - length)), length);
+                length = padded;
+            }
+
+            this.sectorCount = (int)(length / SECTOR_BYTES);
+            this.header = this.channel.map(FileChannel.MapMode.READ_WRITE, 0L, HEADER_BYTES);
+            this.offsets = ((ByteBuffer)this.header.duplicate().position(0).limit(SECTOR_BYTES)).slice().asIntBuffer();
+            this.chunkTimestamps = ((ByteBuffer)this.header.duplicate().position(SECTOR_BYTES).limit(HEADER_BYTES)).slice().asIntBuffer();
+            this.usedSectors.set(0, 2);
+
+            for (int i = 0; i < 1024; ++i)
+            {
+                int offset = this.offsets.get(i);
+
+                if (offset != 0 && (offset >> 8) + (offset & 255) <= this.sectorCount)
+                {
+                    this.usedSectors.set(offset >> 8, (offset >> 8) + (offset & 255));
+                }
+            }
+        }
+        catch (IOException ioexception)
+        {
+            this.channel.close();
+            throw ioexception;
+        }
+    }
+
+    /**
+     * Returns an uncompressed chunk stream from the region file.
+     */
+    @Nullable
+    @Override
+    public DataInputStream getChunkDataInputStream(int x, int z)
+    {
+        if (this.outOfBounds(x, z))
+        {
+            return null;
+        }
+
+        byte[] data;
+        RegionFileCodec codec;
+        this.lock.readLock().lock();
+
+        try
+        {
+            int offset = this.offsets.get(x + z * 32);
+
+            if (offset == 0)
+            {
+                return null;
+            }
+
+            int sector = offset >> 8;
+            int sectors = offset & 255;
+
+            if (sector + sectors > this.sectorCount)
+            {
+                return null;
+            }
+
+            ByteBuffer chunkHeader = ByteBuffer.allocate(5);
+            this.readFully(chunkHeader, (long)sector * SECTOR_BYTES);
+            int length = chunkHeader.getInt(0);
+
+            if (length > SECTOR_BYTES * sectors || length <= 0)
+            {
+                return null;
+            }
+
+            codec = RegionFileCodec.byId(chunkHeader.get(4));
+
+            if (codec == null)
+            {
+                return null;
+            }
+
+            data = new byte[length - 1];
+            this.readFully(ByteBuffer.wrap(data), (long)sector * SECTOR_BYTES + 5L);
+        }
+        catch (IOException ioexception)
+        {
+            return null;
+        }
+        finally
+        {
+            this.lock.readLock().unlock();
+        }
+
+        try
+        {
+            return new DataInputStream(new BufferedInputStream(codec.wrap(new ByteArrayInputStream(data))));
+        }
+        catch (IOException ioexception)
+        {
+            return null;
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            int read = this.channel.read(buffer, position + buffer.position());
+
+            if (read < 0)
+            {
+                throw new IOException("Unexpected end of region file");
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            this.channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * Returns an output stream used to write chunk data. Data is on disk when the returned stream is closed.
+     */
+    @Nullable
+    @Override
+    public DataOutputStream getChunkDataOutputStream(int x, int z)
+    {
+        if (this.outOfBounds(x, z))
+        {
+            return null;
+        }
+
+        try
+        {
+            RegionFileCodec codec = RegionFileCodec.forWriting();
+            return new DataOutputStream(new BufferedOutputStream(codec.wrap(new RegionFile.ChunkBuffer(x, z, codec))));
+        }
+        catch (IOException ioexception)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the specified chunk to disk.
+     */
+    @Override
+    protected void write(int x, int z, byte[] data, int length, RegionFileCodec codec)
+    {
+        int sectorsNeeded = (length + 5) / SECTOR_BYTES + 1;
+
+        if (sectorsNeeded >= 256)
+        {
+            return;
+        }
+
+        this.lock.writeLock().lock();
+
+        try
+        {
+            int offset = this.offsets.get(x + z * 32);
+            int sector = offset >> 8;
+            int sectors = offset & 255;
+
+            if (sector == 0 || sectors != sectorsNeeded)
+            {
+                if (sector != 0)
+                {
+                    this.usedSectors.clear(sector, sector + sectors);
+                }
+
+                sector = this.findFreeRun(sectorsNeeded);
+
+                if (sector + sectorsNeeded > this.sectorCount)
+                {
+                    this.sectorCount = sector + sectorsNeeded;
+                    // keep the file a whole number of sectors long
+                    this.writeFully(ByteBuffer.allocate(1), (long)this.sectorCount * SECTOR_BYTES - 1L);
+                }
+
+                this.usedSectors.set(sector, sector + sectorsNeeded);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(length + 5);
+            buffer.putInt(length + 1);
+            buffer.put((byte)codec.getId());
+            buffer.put(data, 0, length);
+            buffer.flip();
+            this.writeFully(buffer, (long)sector * SECTOR_BYTES);
+            this.offsets.put(x + z * 32, sector << 8 | sectorsNeeded);
+            this.chunkTimestamps.put(x + z * 32, (int)(MinecraftServer.getCurrentTimeMillis() / 1000L));
+        }
+        catch (IOException ioexception)
+        {
+            LOGGER.error("Failed to write chunk {},{} to region file", x, z, ioexception);
+        }
+        finally
+        {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The first sector of a run of free sectors at least count long, possibly past the end of the file
+     */
+    private int findFreeRun(int count)
+    {
+        int start = this.usedSectors.nextClearBit(2);
+
+        while (start < this.sectorCount)
+        {
+            int end = this.usedSectors.nextSetBit(start);
+
+            if (end == -1 || end - start >= count)
+            {
+                return start;
+            }
+
+            start = this.usedSectors.nextClearBit(end);
+        }
+
+        return this.sectorCount;
+    }
+
+    private boolean outOfBounds(int x, int z)
+    {
+        return x < 0 || x >= 32 || z < 0 || z >= 32;
+    }
+
+    /**
+     * Checks if a chunk has been saved.
+     */
+    @Override
+    public boolean isChunkSaved(int x, int z)
+    {
+        return this.offsets.get(x + z * 32) != 0;
+    }
+
+    /**
+     * close this RegionFile and prevent further writes
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.lock.writeLock().lock();
+
+        try
+        {
+            this.header.force();
+            this.channel.close();
+        }
+        finally
+        {
+            this.lock.writeLock().unlock();
+        }
+    }
+}
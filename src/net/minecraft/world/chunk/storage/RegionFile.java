@@ -11,9 +11,6 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.List;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.InflaterInputStream;
 import javax.annotation.Nullable;
 import net.minecraft.server.MinecraftServer;
 
@@ -96,6 +93,19 @@ public class RegionFile
         }
     }
 
+    /**
+     * CM: for alternative backends that do their own file access, the file isn't opened here
+     */
+    protected RegionFile(File fileNameIn, boolean unused)
+    {
+        this.fileName = fileNameIn;
+
+        if (fileNameIn.exists())
+        {
+            this.lastModified = fileNameIn.lastModified();
+        }
+    }
+
     @Nullable
 
     /**
@@ -142,18 +152,13 @@ public class RegionFile
                         else
                         {
                             byte b0 = this.dataFile.readByte();
+                            RegionFileCodec codec = RegionFileCodec.byId(b0); // CM pluggable compression
 
-                            if (b0 == 1)
-                            {
-                                byte[] abyte1 = new byte[l - 1];
-                                this.dataFile.read(abyte1);
-                                return new DataInputStream(new BufferedInputStream(new GZIPInputStream(new ByteArrayInputStream(abyte1))));
-                            }
-                            else if (b0 == 2)
+                            if (codec != null)
                             {
                                 byte[] abyte = new byte[l - 1];
                                 this.dataFile.read(abyte);
-                                return new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(abyte))));
+                                return new DataInputStream(new BufferedInputStream(codec.wrap(new ByteArrayInputStream(abyte))));
                             }
                             else
                             {
@@ -176,13 +181,26 @@ public class RegionFile
     @Nullable
     public DataOutputStream getChunkDataOutputStream(int x, int z)
     {
-        return this.outOfBounds(x, z) ? null : new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(new RegionFile.ChunkBuffer(x, z))));
+        if (this.outOfBounds(x, z))
+        {
+            return null;
+        }
+
+        try
+        {
+            RegionFileCodec codec = RegionFileCodec.forWriting(); // CM pluggable compression
+            return new DataOutputStream(new BufferedOutputStream(codec.wrap(new RegionFile.ChunkBuffer(x, z, codec))));
+        }
+        catch (IOException ioexception)
+        {
+            return null;
+        }
     }
 
     /**
      * Writes the specified chunk to disk.
      */
-    protected synchronized void write(int x, int z, byte[] data, int length)
+    protected synchronized void write(int x, int z, byte[] data, int length, RegionFileCodec codec)
     {
         try
         {
@@ -198,7 +216,7 @@ public class RegionFile
 
             if (j != 0 && k == l)
             {
-                this.write(j, data, length);
+                this.write(j, data, length, codec);
             }
             else
             {
@@ -248,7 +266,7 @@ public class RegionFile
                         this.sectorFree.set(j + j2, Boolean.valueOf(false));
                     }
 
-                    this.write(j, data, length);
+                    this.write(j, data, length, codec);
                 }
                 else
                 {
@@ -262,7 +280,7 @@ public class RegionFile
                     }
 
                     this.sizeDelta += 4096 * l;
-                    this.write(j, data, length);
+                    this.write(j, data, length, codec);
                     this.setOffset(x, z, j << 8 | l);
                 }
             }
@@ -278,11 +296,11 @@ public class RegionFile
     /**
      * Writes the chunk data to this RegionFile.
      */
-    private void write(int sectorNumber, byte[] data, int length) throws IOException
+    private void write(int sectorNumber, byte[] data, int length, RegionFileCodec codec) throws IOException
     {
         this.dataFile.seek((long)(sectorNumber * 4096));
         this.dataFile.writeInt(length + 1);
-        this.dataFile.writeByte(2);
+        this.dataFile.writeByte(codec.getId());
         this.dataFile.write(data, 0, length);
     }
 
@@ -345,17 +363,19 @@ public class RegionFile
     {
         private final int chunkX;
         private final int chunkZ;
+        private final RegionFileCodec codec;
 
-        public ChunkBuffer(int x, int z)
+        public ChunkBuffer(int x, int z, RegionFileCodec codec)
         {
             super(8096);
             this.chunkX = x;
             this.chunkZ = z;
+            this.codec = codec;
         }
 
         public void close() throws IOException
         {
-            RegionFile.this.write(this.chunkX, this.chunkZ, this.buf, this.count);
+            RegionFile.this.write(this.chunkX, this.chunkZ, this.buf, this.count, this.codec);
         }
     }
 }
\ No newline at end of file
@@ -1,93 +1,275 @@
 package net.minecraft.world.chunk.storage;
 
+import carpet.CarpetSettings;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 public class RegionFileCache
 {
+    private static final Logger LOGGER = LogManager.getLogger();
     /** A map containing Files as keys and RegionFiles as values */
-    private static final Map<File, RegionFile> REGIONS_BY_FILE = Maps.<File, RegionFile>newHashMap();
+    // CM: concurrent so lookups of open files don't need the lock, see nioRegionFiles
+    private static final Map<File, RegionFile> REGIONS_BY_FILE = Maps.<File, RegionFile>newConcurrentMap();
+    /**
+     * CM: open files in the order the clock hand visits them, instead of dropping every file when the cache is full
+     * the hand evicts the first file that wasn't used since the hand last passed it
+     */
+    private static final List<File> CLOCK = Lists.<File>newArrayList();
+    private static int clockHand;
+    /** CM: counters for every region file that was looked up since the server started or the stats were reset */
+    private static final Map<File, RegionFileCache.Stats> STATS = Maps.<File, RegionFileCache.Stats>newConcurrentMap();
 
-    public static synchronized RegionFile createOrLoadRegionFile(File worldDir, int chunkX, int chunkZ)
+    public static RegionFile createOrLoadRegionFile(File worldDir, int chunkX, int chunkZ)
     {
         File file1 = new File(worldDir, "region");
         File file2 = new File(file1, "r." + (chunkX >> 5) + "." + (chunkZ >> 5) + ".mca");
+
+        if (CarpetSettings.nioRegionFiles)
+        {
+            RegionFile regionfile = REGIONS_BY_FILE.get(file2);
+
+            if (regionfile != null)
+            {
+                getStats(file2).hit();
+                return regionfile;
+            }
+        }
+
+        synchronized (RegionFileCache.class)
+        {
+            return createOrLoadRegionFile(file1, file2);
+        }
+    }
+
+    private static RegionFile createOrLoadRegionFile(File file1, File file2)
+    {
         RegionFile regionfile = REGIONS_BY_FILE.get(file2);
+        RegionFileCache.Stats stats = getStats(file2);
 
         if (regionfile != null)
         {
+            stats.hit();
             return regionfile;
         }
         else
         {
+            stats.misses.incrementAndGet();
+
             if (!file1.exists())
             {
                 file1.mkdirs();
             }
 
-            if (REGIONS_BY_FILE.size() >= 256)
+            return openRegionFile(file2, stats);
+        }
+    }
+
+    public static RegionFile getRegionFileIfExists(File worldDir, int chunkX, int chunkZ)
+    {
+        File file1 = new File(worldDir, "region");
+        File file2 = new File(file1, "r." + (chunkX >> 5) + "." + (chunkZ >> 5) + ".mca");
+
+        if (CarpetSettings.nioRegionFiles)
+        {
+            RegionFile regionfile = REGIONS_BY_FILE.get(file2);
+
+            if (regionfile != null)
             {
-                clearRegionFileReferences();
+                getStats(file2).hit();
+                return regionfile;
             }
+        }
 
-            RegionFile regionfile1 = new RegionFile(file2);
-            REGIONS_BY_FILE.put(file2, regionfile1);
-            return regionfile1;
+        synchronized (RegionFileCache.class)
+        {
+            return getRegionFileIfExists(file1, file2);
         }
     }
 
-    public static synchronized RegionFile getRegionFileIfExists(File worldDir, int chunkX, int chunkZ)
+    @Nullable
+    private static RegionFile getRegionFileIfExists(File file1, File file2)
     {
-        File file1 = new File(worldDir, "region");
-        File file2 = new File(file1, "r." + (chunkX >> 5) + "." + (chunkZ >> 5) + ".mca");
         RegionFile regionfile = REGIONS_BY_FILE.get(file2);
 
         if (regionfile != null)
         {
+            getStats(file2).hit();
             return regionfile;
         }
         else if (file1.exists() && file2.exists())
         {
-            if (REGIONS_BY_FILE.size() >= 256)
+            RegionFileCache.Stats stats = getStats(file2);
+            stats.misses.incrementAndGet();
+            return openRegionFile(file2, stats);
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+    private static RegionFileCache.Stats getStats(File file)
+    {
+        RegionFileCache.Stats stats = STATS.get(file);
+
+        if (stats == null)
+        {
+            stats = STATS.computeIfAbsent(file, RegionFileCache.Stats::new);
+        }
+
+        return stats;
+    }
+
+    /**
+     * CM: opens the file, making room in the cache first. Called with the lock held.
+     */
+    private static RegionFile openRegionFile(File file, RegionFileCache.Stats stats)
+    {
+        int slot = evict(Math.max(CarpetSettings.regionFileCacheSize, 1) - 1);
+        RegionFile regionfile = openRegionFile(file);
+        stats.opens.incrementAndGet();
+        stats.referenced = false;
+        REGIONS_BY_FILE.put(file, regionfile);
+
+        if (slot < 0)
+        {
+            CLOCK.add(file);
+        }
+        else
+        {
+            CLOCK.set(slot, file);
+            clockHand = (slot + 1) % CLOCK.size();
+        }
+
+        return regionfile;
+    }
+
+    /**
+     * CM: closes files until at most maxOpen are left open
+     * @return The clock slot of the last closed file, left in place to be reused, or -1 if nothing had to be closed
+     */
+    private static int evict(int maxOpen)
+    {
+        while (CLOCK.size() > maxOpen)
+        {
+            File file = CLOCK.get(clockHand);
+            RegionFileCache.Stats stats = getStats(file);
+
+            if (stats.referenced)
+            {
+                stats.referenced = false;
+                clockHand = (clockHand + 1) % CLOCK.size();
+                continue;
+            }
+
+            closeRegionFile(file, REGIONS_BY_FILE.remove(file));
+
+            if (CLOCK.size() - 1 == maxOpen)
             {
-                clearRegionFileReferences();
+                return clockHand;
             }
 
-            RegionFile regionfile1 = new RegionFile(file2);
-            REGIONS_BY_FILE.put(file2, regionfile1);
-            return regionfile1;
+            // the cache was shrunk, more than one file has to go
+            CLOCK.remove(clockHand);
+
+            if (clockHand >= CLOCK.size())
+            {
+                clockHand = 0;
+            }
         }
-        else
+
+        return -1;
+    }
+
+    private static void closeRegionFile(File file, @Nullable RegionFile regionfile)
+    {
+        try
         {
-            return null;
+            if (regionfile != null)
+            {
+                regionfile.close();
+                getStats(file).closes.incrementAndGet();
+            }
+        }
+        catch (IOException ioexception)
+        {
+            ioexception.printStackTrace();
         }
     }
 
     /**
-     * clears region file references
+     * CM: picks the region file backend, the vanilla one is used if the mapped file can't be opened
      */
-    public static synchronized void clearRegionFileReferences()
+    private static RegionFile openRegionFile(File file)
     {
-        for (RegionFile regionfile : REGIONS_BY_FILE.values())
+        if (CarpetSettings.nioRegionFiles)
         {
             try
             {
-                if (regionfile != null)
-                {
-                    regionfile.close();
-                }
+                return new MappedRegionFile(file);
             }
             catch (IOException ioexception)
             {
-                ioexception.printStackTrace();
+                LOGGER.error("Couldn't open region file {} with NIO, falling back to vanilla", file, ioexception);
             }
         }
 
+        return new RegionFile(file);
+    }
+
+    /**
+     * clears region file references
+     */
+    public static synchronized void clearRegionFileReferences()
+    {
+        for (Map.Entry<File, RegionFile> entry : REGIONS_BY_FILE.entrySet())
+        {
+            closeRegionFile(entry.getKey(), entry.getValue());
+        }
+
         REGIONS_BY_FILE.clear();
+        CLOCK.clear();
+        clockHand = 0;
+    }
+
+    /**
+     * CM: number of region files currently open
+     */
+    public static int getOpenCount()
+    {
+        return REGIONS_BY_FILE.size();
+    }
+
+    /**
+     * CM: snapshot of the per region counters
+     */
+    public static List<RegionFileCache.Stats> getStats()
+    {
+        return new ArrayList<RegionFileCache.Stats>(STATS.values());
+    }
+
+    public static synchronized void resetStats()
+    {
+        STATS.keySet().retainAll(REGIONS_BY_FILE.keySet());
+
+        for (RegionFileCache.Stats stats : STATS.values())
+        {
+            stats.hits.set(0L);
+            stats.misses.set(0L);
+            stats.opens.set(0L);
+            stats.closes.set(0L);
+        }
     }
 
     /**
@@ -113,4 +295,29 @@ public class RegionFileCache
         RegionFile regionfile = getRegionFileIfExists(worldDir, chunkX, chunkZ);
         return regionfile != null ? regionfile.isChunkSaved(chunkX & 31, chunkZ & 31) : false;
     }
-}
\ No newline at end of file
+
+    /**
+     * CM: lookup counters of a single region file
+     */
+    public static class Stats
+    {
+        public final File file;
+        public final AtomicLong hits = new AtomicLong();
+        public final AtomicLong misses = new AtomicLong();
+        public final AtomicLong opens = new AtomicLong();
+        public final AtomicLong closes = new AtomicLong();
+        /** clock reference bit, set on every hit */
+        private volatile boolean referenced;
+
+        private Stats(File file)
+        {
+            this.file = file;
+        }
+
+        private void hit()
+        {
+            this.hits.incrementAndGet();
+            this.referenced = true;
+        }
+    }
+}
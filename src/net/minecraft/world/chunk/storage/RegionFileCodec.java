@@ -0,0 +1,136 @@
+package net.minecraft.world.chunk.storage;
+
+import carpet.CarpetSettings;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import javax.annotation.Nullable;
+
+/**
+ * CM: compression of chunks in region files, identified by the type byte stored in front of every chunk.
+ * Every codec can always be read, the one used for writing is picked by the regionCompression rule.
+ */
+public enum RegionFileCodec
+{
+    GZIP(1)
+    {
+        public InputStream wrap(InputStream in) throws IOException
+        {
+            return new GZIPInputStream(in);
+        }
+
+        public OutputStream wrap(OutputStream out, final int level) throws IOException
+        {
+            return new GZIPOutputStream(out)
+            {
+                {
+                    this.def.setLevel(level);
+                }
+            };
+        }
+    },
+    DEFLATE(2)
+    {
+        public InputStream wrap(InputStream in)
+        {
+            return new InflaterInputStream(in);
+        }
+
+        public OutputStream wrap(OutputStream out, int level)
+        {
+            if (level == Deflater.DEFAULT_COMPRESSION)
+            {
+                return new DeflaterOutputStream(out);
+            }
+
+            return new DeflaterOutputStream(out, new Deflater(level))
+            {
+                public void close() throws IOException
+                {
+                    try
+                    {
+                        super.close();
+                    }
+                    finally
+                    {
+                        // not the default deflater, so the stream won't release it
+                        this.def.end();
+                    }
+                }
+            };
+        }
+    },
+    /** Uncompressed, same type id as later versions use. Not readable by a vanilla 1.12 server */
+    NONE(3)
+    {
+        public InputStream wrap(InputStream in)
+        {
+            return in;
+        }
+
+        public OutputStream wrap(OutputStream out, int level)
+        {
+            return out;
+        }
+    };
+
+    private static final RegionFileCodec[] BY_ID = new RegionFileCodec[4];
+    private final int id;
+
+    private RegionFileCodec(int id)
+    {
+        this.id = id;
+    }
+
+    public int getId()
+    {
+        return this.id;
+    }
+
+    public abstract InputStream wrap(InputStream in) throws IOException;
+
+    /**
+     * @param level deflate level from 0 to 9, or -1 for the zlib default
+     */
+    public abstract OutputStream wrap(OutputStream out, int level) throws IOException;
+
+    public OutputStream wrap(OutputStream out) throws IOException
+    {
+        return this.wrap(out, CarpetSettings.regionDeflateLevel);
+    }
+
+    @Nullable
+    public static RegionFileCodec byId(int id)
+    {
+        return id >= 0 && id < BY_ID.length ? BY_ID[id] : null;
+    }
+
+    /**
+     * The codec new chunk data is written with
+     */
+    public static RegionFileCodec forWriting()
+    {
+        switch (CarpetSettings.regionCompression)
+        {
+            case gzip:
+                return GZIP;
+            case none:
+                return NONE;
+            default:
+                return DEFLATE;
+        }
+    }
+
+    static
+    {
+        for (RegionFileCodec codec : values())
+        {
+            BY_ID[codec.id] = codec;
+        }
+    }
+}
@@ -25,6 +25,10 @@ public class MeterEvent {
 	}
 	
 	public NBTTagCompound toNbt() {
+		return toNbt(type, metadata);
+	}
+	
+	public static NBTTagCompound toNbt(EventType type, int metadata) {
 		NBTTagCompound nbt = new NBTTagCompound();
 		
 		nbt.setTag("type", type.toNbt());
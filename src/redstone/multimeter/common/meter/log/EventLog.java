@@ -3,6 +3,7 @@ package redstone.multimeter.common.meter.log;
 import net.minecraft.nbt.NBTTagCompound;
 
 import redstone.multimeter.common.TickPhase;
+import redstone.multimeter.common.meter.event.EventType;
 import redstone.multimeter.common.meter.event.MeterEvent;
 
 public class EventLog {
@@ -80,9 +81,13 @@ public class EventLog {
 	}
 	
 	public NBTTagCompound toNbt() {
+		return toNbt(tick, subtick, tickPhase, event.getType(), event.getMetadata());
+	}
+	
+	public static NBTTagCompound toNbt(long tick, int subtick, TickPhase tickPhase, EventType type, int metadata) {
 		NBTTagCompound nbt = new NBTTagCompound();
 		
-		nbt.setTag("meter event", event.toNbt());
+		nbt.setTag("meter event", MeterEvent.toNbt(type, metadata));
 		nbt.setLong("tick", tick);
 		nbt.setInteger("subtick", subtick);
 		nbt.setTag("tick phase", tickPhase.toNbt());
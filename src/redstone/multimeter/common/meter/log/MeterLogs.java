@@ -1,34 +1,33 @@
 package redstone.multimeter.common.meter.log;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 
+import redstone.multimeter.common.TickPhase;
 import redstone.multimeter.common.meter.event.EventType;
-import redstone.multimeter.util.ListUtils;
+import redstone.multimeter.common.meter.event.MeterEvent;
 import redstone.multimeter.util.NbtUtils;
 
 public class MeterLogs {
 	
-	private final List<EventLog>[] eventLogs;
+	private final LogColumns[] eventLogs;
 	
 	private long lastLoggedTick = -1;
 	
 	public MeterLogs() {
-		@SuppressWarnings("unchecked")
-		List<EventLog>[] lists = new List[EventType.ALL.length];
+		LogColumns[] columns = new LogColumns[EventType.ALL.length];
 		
-		for (int index = 0; index < lists.length; index++) {
-			lists[index] = new ArrayList<>();
+		for (int index = 0; index < columns.length; index++) {
+			columns[index] = new LogColumns();
 		}
 		
-		this.eventLogs = lists;
+		this.eventLogs = columns;
 	}
 	
 	public void clear() {
-		for (List<EventLog> logs : eventLogs) {
+		for (LogColumns logs : eventLogs) {
 			logs.clear();
 		}
 		
@@ -39,76 +38,81 @@ public class MeterLogs {
 		return lastLoggedTick < 0;
 	}
 	
-	private List<EventLog> getLogs(EventType type) {
+	private LogColumns getLogs(EventType type) {
 		return eventLogs[type.getIndex()];
 	}
 	
 	public void add(EventLog log) {
-		EventType type = log.getEvent().getType();
-		List<EventLog> logs = getLogs(type);
-		
-		logs.add(log);
+		MeterEvent event = log.getEvent();
+		add(log.getTick(), log.getSubtick(), log.getTickPhase(), event.getType(), event.getMetadata());
+	}
+	
+	/**
+	 * Adds a log without creating an {@link EventLog}
+	 */
+	public void add(long tick, int subtick, TickPhase tickPhase, EventType type, int metadata) {
+		getLogs(type).add(tick, subtick, tickPhase, metadata);
 		
-		if (log.getTick() > lastLoggedTick) {
-			lastLoggedTick = log.getTick();
+		if (tick > lastLoggedTick) {
+			lastLoggedTick = tick;
 		}
 	}
 	
 	public void clearOldLogs(long cutoff) {
-		for (List<EventLog> logs : eventLogs) {
-			while (!logs.isEmpty()) {
-				EventLog log = logs.get(0);
-				
-				if (log.getTick() > cutoff) {
-					break;
-				}
-				
-				logs.remove(0);
+		for (LogColumns logs : eventLogs) {
+			while (logs.size > 0 && logs.tick(0) <= cutoff) {
+				logs.removeFirst();
 			}
 		}
 	}
 	
+	public int getLogCount(EventType type) {
+		return getLogs(type).size;
+	}
+	
 	public EventLog getLog(EventType type, int index) {
 		if (index < 0) {
 			return null;
 		}
 		
-		List<EventLog> logs = getLogs(type);
+		LogColumns logs = getLogs(type);
 		
-		if (index >= logs.size()) {
+		if (index >= logs.size) {
 			return null;
 		}
 		
-		return logs.get(index);
+		return logs.get(type, index);
 	}
 	
 	public int getLastLogBefore(EventType type, long tick) {
 		return getLastLogBefore(type, tick, 0);
 	}
 	
-	public int getLastLogBefore(EventType type, long tick, int subick) {
-		List<EventLog> logs = getLogs(type);
+	public int getLastLogBefore(EventType type, long tick, int subtick) {
+		LogColumns logs = getLogs(type);
 		
-		if (logs.isEmpty() || !logs.get(0).isBefore(tick, subick)) {
+		if (logs.size == 0 || !logs.isBefore(0, tick, subtick)) {
 			return -1;
 		}
 		if (tick > lastLoggedTick) {
-			return logs.size() - 1;
+			return logs.size - 1;
 		}
 		
-		int index = ListUtils.binarySearch(logs, event -> event.isBefore(tick, subick));
-		EventLog log = logs.get(index);
+		// the first log is before, find the last one that is
+		int low = 0;
+		int high = logs.size - 1;
 		
-		while (!log.isBefore(tick, subick)) {
-			if (index == 0) {
-				return -1;
-			}
+		while (high > low) {
+			int mid = (low + high + 1) >>> 1;
 			
-			log = logs.get(--index);
+			if (logs.isBefore(mid, tick, subtick)) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
 		}
 		
-		return index;
-		
+		return low;
 	}
 	
 	public EventLog getLastLogBefore(long tick) {
@@ -116,18 +120,22 @@ public class MeterLogs {
 	}
 	
 	public EventLog getLastLogBefore(long tick, int subtick) {
-		EventLog lastLog = null;
+		EventType lastType = null;
+		int lastIndex = -1;
 		
 		for (EventType type : EventType.ALL) {
 			int index = getLastLogBefore(type, tick, subtick);
-			EventLog log = getLog(type, index);
 			
-			if (lastLog == null || (log != null && log.isAfter(lastLog))) {
-				lastLog = log;
+			if (index < 0) {
+				continue;
+			}
+			if (lastType == null || getLogs(type).isAfter(index, getLogs(lastType), lastIndex)) {
+				lastType = type;
+				lastIndex = index;
 			}
 		}
 		
-		return lastLog;
+		return lastType == null ? null : getLogs(lastType).get(lastType, lastIndex);
 	}
 	
 	public EventLog getLogAt(long tick, int subtick) {
@@ -151,9 +159,11 @@ public class MeterLogs {
 	
 	private NBTTagList toNbt(EventType type) {
 		NBTTagList list = new NBTTagList();
+		LogColumns logs = getLogs(type);
 		
-		for (EventLog log : getLogs(type)) {
-			list.appendTag(log.toNbt());
+		for (int index = 0; index < logs.size; index++) {
+			int slot = logs.slot(index);
+			list.appendTag(EventLog.toNbt(logs.ticks[slot], logs.subticks[slot], logs.tickPhases[slot], type, logs.metadata[slot]));
 		}
 		
 		return list;
@@ -177,4 +187,104 @@ public class MeterLogs {
 			add(log);
 		}
 	}
+	
+	/**
+	 * Logs of one event type as parallel arrays used as a ring buffer,
+	 * ordered by tick and subtick since logs are added in order.
+	 */
+	private static class LogColumns {
+		
+		private long[] ticks = new long[16];
+		private int[] subticks = new int[16];
+		private int[] metadata = new int[16];
+		private TickPhase[] tickPhases = new TickPhase[16];
+		private int head;
+		private int size;
+		
+		private int slot(int index) {
+			return (head + index) & (ticks.length - 1);
+		}
+		
+		private long tick(int index) {
+			return ticks[slot(index)];
+		}
+		
+		private boolean isBefore(int index, long tick, int subtick) {
+			int slot = slot(index);
+			
+			if (ticks[slot] == tick) {
+				return subticks[slot] < subtick;
+			}
+			
+			return ticks[slot] < tick;
+		}
+		
+		private boolean isAfter(int index, LogColumns other, int otherIndex) {
+			int slot = slot(index);
+			int otherSlot = other.slot(otherIndex);
+			
+			if (ticks[slot] == other.ticks[otherSlot]) {
+				return subticks[slot] > other.subticks[otherSlot];
+			}
+			
+			return ticks[slot] > other.ticks[otherSlot];
+		}
+		
+		private EventLog get(EventType type, int index) {
+			int slot = slot(index);
+			return new EventLog(ticks[slot], subticks[slot], tickPhases[slot], new MeterEvent(type, metadata[slot]));
+		}
+		
+		private void add(long tick, int subtick, TickPhase tickPhase, int data) {
+			if (size == ticks.length) {
+				grow();
+			}
+			
+			int slot = slot(size++);
+			
+			ticks[slot] = tick;
+			subticks[slot] = subtick;
+			tickPhases[slot] = tickPhase;
+			metadata[slot] = data;
+		}
+		
+		private void removeFirst() {
+			tickPhases[head] = null;
+			head = (head + 1) & (ticks.length - 1);
+			size--;
+		}
+		
+		private void clear() {
+			Arrays.fill(tickPhases, null);
+			head = 0;
+			size = 0;
+		}
+		
+		private void grow() {
+			int capacity = ticks.length * 2;
+			
+			long[] newTicks = new long[capacity];
+			int[] newSubticks = new int[capacity];
+			int[] newMetadata = new int[capacity];
+			TickPhase[] newTickPhases = new TickPhase[capacity];
+			
+			// unwrap the ring so the oldest log ends up at index 0
+			int first = ticks.length - head;
+			
+			System.arraycopy(ticks, head, newTicks, 0, first);
+			System.arraycopy(ticks, 0, newTicks, first, head);
+			System.arraycopy(subticks, head, newSubticks, 0, first);
+			System.arraycopy(subticks, 0, newSubticks, first, head);
+			System.arraycopy(metadata, head, newMetadata, 0, first);
+			System.arraycopy(metadata, 0, newMetadata, first, head);
+			System.arraycopy(tickPhases, head, newTickPhases, 0, first);
+			System.arraycopy(tickPhases, 0, newTickPhases, first, head);
+			
+			ticks = newTicks;
+			subticks = newSubticks;
+			metadata = newMetadata;
+			tickPhases = newTickPhases;
+			head = 0;
+		}
+	}
 }
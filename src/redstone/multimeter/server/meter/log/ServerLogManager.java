@@ -6,7 +6,6 @@ import net.minecraft.nbt.NBTTagList;
 import redstone.multimeter.common.TickPhase;
 import redstone.multimeter.common.meter.Meter;
 import redstone.multimeter.common.meter.event.MeterEvent;
-import redstone.multimeter.common.meter.log.EventLog;
 import redstone.multimeter.common.meter.log.LogManager;
 import redstone.multimeter.common.network.packets.MeterLogsPacket;
 import redstone.multimeter.server.meter.ServerMeterGroup;
@@ -47,8 +46,7 @@ public class ServerLogManager extends LogManager {
 		int subtick = nextSubtick++;
 		TickPhase phase = meterGroup.getMultimeter().getMultimeterServer().getTickPhase();
 		
-		EventLog log = new EventLog(tick, subtick, phase, event);
-		meter.getLogs().add(log);
+		meter.getLogs().add(tick, subtick, phase, event.getType(), event.getMetadata());
 	}
 	
 	public void flushLogs() {